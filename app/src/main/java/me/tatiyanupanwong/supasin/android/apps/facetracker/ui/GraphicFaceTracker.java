@@ -0,0 +1,78 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.ui;
+
+import com.google.android.gms.vision.Detector.Detections;
+import com.google.android.gms.vision.face.Face;
+
+import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay.FaceGraphic;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay.FaceGraphicPool;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay.GraphicOverlay;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.util.FaceClassificationFilter;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.util.SmoothingFaceTracker;
+
+/**
+ * Tracks a single face at a time, keeping a pooled {@link FaceGraphic} on the overlay updated
+ * with its position and smoothed classification probabilities.
+ */
+final class GraphicFaceTracker extends SmoothingFaceTracker {
+    private final GraphicOverlay mOverlay;
+    private final FaceGraphicPool mGraphicPool;
+
+    private FaceGraphic mFaceGraphic;
+
+    GraphicFaceTracker(GraphicOverlay overlay, FaceGraphicPool graphicPool) {
+        mOverlay = overlay;
+        mGraphicPool = graphicPool;
+    }
+
+    /**
+     * Start tracking the detected face instance within the face overlay.
+     */
+    @Override
+    protected void onNewFace(int faceId, Face item) {
+        releaseGraphic();
+
+        mFaceGraphic = mGraphicPool.acquire();
+        mFaceGraphic.setId(faceId);
+    }
+
+    /**
+     * Update the position/characteristics of the face within the overlay, showing the
+     * smoothed classification probabilities.
+     */
+    @Override
+    protected void onUpdate(Detections<Face> detectionResults, Face face,
+            FaceClassificationFilter filter) {
+        mOverlay.add(mFaceGraphic);
+        mFaceGraphic.updateFace(face,
+                filter.getSmilingProbability(),
+                filter.getRightEyeOpenProbability(),
+                filter.getLeftEyeOpenProbability());
+    }
+
+    /**
+     * Hide the graphic when the corresponding face was not detected.  This can happen for
+     * intermediate frames temporarily (e.g., if the face was momentarily blocked from
+     * view).
+     */
+    @Override
+    public void onMissing(Detections<Face> detectionResults) {
+        mOverlay.remove(mFaceGraphic);
+    }
+
+    /**
+     * Called when the face is assumed to be gone for good. Remove the graphic annotation from
+     * the overlay and return it to the pool.
+     */
+    @Override
+    public void onDone() {
+        releaseGraphic();
+    }
+
+    private void releaseGraphic() {
+        if (mFaceGraphic != null) {
+            mOverlay.remove(mFaceGraphic);
+            mGraphicPool.release(mFaceGraphic);
+            mFaceGraphic = null;
+        }
+    }
+}
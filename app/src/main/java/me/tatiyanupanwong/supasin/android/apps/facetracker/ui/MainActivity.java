@@ -8,25 +8,26 @@ import android.view.View;
 import android.widget.Switch;
 
 import com.google.android.gms.vision.CameraSource;
-import com.google.android.gms.vision.Detector.Detections;
-import com.google.android.gms.vision.Tracker;
-import com.google.android.gms.vision.face.Face;
 
 import java.io.IOException;
 
 import me.tatiyanupanwong.supasin.android.apps.facetracker.R;
 import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.camera.CameraSourcePreview;
-import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay.FaceGraphic;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay.FaceGraphicPool;
 import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay.FrameGraphic;
 import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay.GraphicOverlay;
 import me.tatiyanupanwong.supasin.android.apps.facetracker.util.CameraSourceHelper;
 
 public class MainActivity extends AppCompatActivity {
+    // Only the largest face is tracked, and its graphic is released before the next one is
+    // acquired.
+    private static final int GRAPHIC_POOL_CAPACITY = 1;
 
     private ViewHolder mViews;
     private CameraSourceHelper mCameraSourceHelper;
 
     private FrameGraphic mFrameGraphic;
+    private FaceGraphicPool mGraphicPool;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -36,7 +37,9 @@ public class MainActivity extends AppCompatActivity {
         mViews = new ViewHolder(this);
         mFrameGraphic = new FrameGraphic(mViews.overlay);
 
-        mCameraSourceHelper = new CameraSourceHelper(this, new GraphicFaceTracker(mViews.overlay),
+        mGraphicPool = new FaceGraphicPool(mViews.overlay, GRAPHIC_POOL_CAPACITY);
+        mCameraSourceHelper = new CameraSourceHelper(this,
+                new GraphicFaceTracker(mViews.overlay, mGraphicPool),
                 this::onStartCameraSource);
 
         mViews.buttonFlip.setOnClickListener(
@@ -45,6 +48,9 @@ public class MainActivity extends AppCompatActivity {
 
         mViews.switchFrame.setOnCheckedChangeListener(
                 (buttonView, isChecked) -> setFrameEnabled(isChecked));
+
+        mViews.switchLandmarks.setOnCheckedChangeListener(
+                (buttonView, isChecked) -> setLandmarksEnabled(isChecked));
     }
 
     private void onStartCameraSource(CameraSource cameraSource) throws IOException {
@@ -59,6 +65,11 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private void setLandmarksEnabled(boolean enabled) {
+        mCameraSourceHelper.setLandmarksEnabled(enabled);
+        mGraphicPool.setLandmarksEnabled(enabled);
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -90,64 +101,20 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
-    private static class GraphicFaceTracker extends Tracker<Face> {
-        private final GraphicOverlay mOverlay;
-        private final FaceGraphic mFaceGraphic;
-
-        GraphicFaceTracker(GraphicOverlay overlay) {
-            mOverlay = overlay;
-            mFaceGraphic = new FaceGraphic(mOverlay);
-        }
-
-        /**
-         * Start tracking the detected face instance within the face overlay.
-         */
-        @Override
-        public void onNewItem(int faceId, Face item) {
-            mFaceGraphic.setId(faceId);
-        }
-
-        /**
-         * Update the position/characteristics of the face within the overlay.
-         */
-        @Override
-        public void onUpdate(Detections<Face> detectionResults, Face face) {
-            mOverlay.add(mFaceGraphic);
-            mFaceGraphic.updateFace(face);
-        }
-
-        /**
-         * Hide the graphic when the corresponding face was not detected.  This can happen for
-         * intermediate frames temporarily (e.g., if the face was momentarily blocked from
-         * view).
-         */
-        @Override
-        public void onMissing(Detections<Face> detectionResults) {
-            mOverlay.remove(mFaceGraphic);
-        }
-
-        /**
-         * Called when the face is assumed to be gone for good. Remove the graphic annotation from
-         * the overlay.
-         */
-        @Override
-        public void onDone() {
-            mOverlay.remove(mFaceGraphic);
-        }
-    }
-
     private static class ViewHolder {
         final CameraSourcePreview preview;
         final GraphicOverlay overlay;
 
         final View buttonFlip;
         final Switch switchFrame;
+        final Switch switchLandmarks;
 
         ViewHolder(Activity activity) {
             preview = activity.findViewById(R.id.preview);
             overlay = activity.findViewById(R.id.face_overlay);
             buttonFlip = activity.findViewById(R.id.button_flip);
             switchFrame = activity.findViewById(R.id.switch_frame);
+            switchLandmarks = activity.findViewById(R.id.switch_landmarks);
         }
     }
 }
@@ -3,10 +3,15 @@ package me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.PointF;
 
 import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
 
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Graphic instance for rendering face position, orientation, and landmarks within an associated
@@ -18,6 +23,12 @@ public class FaceGraphic extends GraphicOverlay.Graphic {
     private static final float ID_Y_OFFSET = 50.0f;
     private static final float ID_X_OFFSET = -50.0f;
     private static final float BOX_STROKE_WIDTH = 5.0f;
+    private static final float LANDMARK_POINT_SIZE = 10.0f;
+
+    /** Number of distinct {@link Landmark} types a face may report. */
+    private static final int MAX_LANDMARKS = 12;
+    /** Number of Euler angle axes drawn from the face center. */
+    private static final int AXIS_COUNT = 2;
 
     private static final int[] COLOR_CHOICES = {
             Color.BLUE,
@@ -28,44 +39,95 @@ public class FaceGraphic extends GraphicOverlay.Graphic {
             Color.WHITE,
             Color.YELLOW
     };
-    private static int sCurrentColorIndex = 0;
+    private static final PaintSet[] PAINT_SETS = new PaintSet[COLOR_CHOICES.length];
+    private static final AtomicInteger sNextColorIndex = new AtomicInteger();
+
+    static {
+        for (int i = 0; i < COLOR_CHOICES.length; ++i) {
+            PAINT_SETS[i] = new PaintSet(COLOR_CHOICES[i]);
+        }
+    }
 
-    private Paint mFacePositionPaint;
-    private Paint mIdPaint;
-    private Paint mBoxPaint;
+    // Packed x/y coordinates, reused across frames so each face is submitted with a single
+    // drawPoints() and a single drawLines() call.
+    private final float[] mLandmarkPoints = new float[MAX_LANDMARKS * 2];
+    private final float[] mAxisLines = new float[AXIS_COUNT * 4];
 
+    private volatile PaintSet mPaints;
     private volatile Face mFace;
+    private volatile float mSmilingProbability;
+    private volatile float mRightEyeOpenProbability;
+    private volatile float mLeftEyeOpenProbability;
     private int mFaceId;
+    private final AtomicBoolean mLandmarksEnabled;
 
+    /** Pool the graphic comes from, if any. */
+    final FaceGraphicPool mPool;
+    /** Whether the graphic is handed out by its pool.  Guarded by the lock of the pool. */
+    boolean mAcquired;
+
+    /**
+     * Creates a standalone graphic.  Landmarks are only drawn by graphics from a
+     * {@link FaceGraphicPool}, see {@link FaceGraphicPool#setLandmarksEnabled(boolean)}.
+     */
     public FaceGraphic(GraphicOverlay overlay) {
         super(overlay);
+        mLandmarksEnabled = new AtomicBoolean();
+        mPool = null;
+        mPaints = nextPaintSet();
+    }
 
-        sCurrentColorIndex = (sCurrentColorIndex + 1) % COLOR_CHOICES.length;
-        final int selectedColor = COLOR_CHOICES[sCurrentColorIndex];
-
-        mFacePositionPaint = new Paint();
-        mFacePositionPaint.setColor(selectedColor);
+    /**
+     * Creates a pooled graphic reading whether landmarks are drawn from a flag shared with the
+     * other graphics of the pool, so that a change applies to all of them at their next draw.
+     * The color is only picked by {@link #reset()} when the graphic is acquired.
+     */
+    FaceGraphic(GraphicOverlay overlay, FaceGraphicPool pool, AtomicBoolean landmarksEnabled) {
+        super(overlay);
+        mLandmarksEnabled = landmarksEnabled;
+        mPool = pool;
+        mPaints = PAINT_SETS[0];
+    }
 
-        mIdPaint = new Paint();
-        mIdPaint.setColor(selectedColor);
-        mIdPaint.setTextSize(ID_TEXT_SIZE);
+    /**
+     * Picks the paints for the next color in rotation.  Safe to call from any thread.
+     */
+    private static PaintSet nextPaintSet() {
+        final int index = sNextColorIndex.getAndIncrement() & Integer.MAX_VALUE;
+        return PAINT_SETS[index % PAINT_SETS.length];
+    }
 
-        mBoxPaint = new Paint();
-        mBoxPaint.setColor(selectedColor);
-        mBoxPaint.setStyle(Paint.Style.STROKE);
-        mBoxPaint.setStrokeWidth(BOX_STROKE_WIDTH);
+    /**
+     * Prepares a recycled graphic to track a new face with the next color in rotation.
+     */
+    void reset() {
+        mFace = null;
+        mFaceId = 0;
+        mPaints = nextPaintSet();
     }
 
     public void setId(int id) {
         mFaceId = id;
     }
 
+    /**
+     * Returns the color the face is currently drawn with.
+     */
+    int getColor() {
+        return mPaints.color;
+    }
+
 
     /**
-     * Updates the face instance from the detection of the most recent frame.  Invalidates the
-     * relevant portions of the overlay to trigger a redraw.
+     * Updates the face instance from the detection of the most recent frame, displaying the
+     * supplied classification probabilities in place of the raw ones from the face, e.g. after
+     * smoothing.  Invalidates the relevant portions of the overlay to trigger a redraw.
      */
-    public void updateFace(Face face) {
+    public void updateFace(Face face, float smilingProbability, float rightEyeOpenProbability,
+            float leftEyeOpenProbability) {
+        mSmilingProbability = smilingProbability;
+        mRightEyeOpenProbability = rightEyeOpenProbability;
+        mLeftEyeOpenProbability = leftEyeOpenProbability;
         mFace = face;
         postInvalidate();
     }
@@ -75,33 +137,132 @@ public class FaceGraphic extends GraphicOverlay.Graphic {
      */
     @Override
     public void draw(Canvas canvas) {
-        if (mFace == null) {
+        final Face face = mFace;
+        if (face == null) {
             return;
         }
+        final PaintSet paints = mPaints;
 
         // Draws a circle at the position of the detected face, with the face's track id below.
-        float coordinateX = translateX(mFace.getPosition().x + mFace.getWidth() / 2);
-        float coordinateY = translateY(mFace.getPosition().y + mFace.getHeight() / 2);
-        canvas.drawCircle(coordinateX, coordinateY, FACE_POSITION_RADIUS, mFacePositionPaint);
+        float coordinateX = translateX(face.getPosition().x + face.getWidth() / 2);
+        float coordinateY = translateY(face.getPosition().y + face.getHeight() / 2);
+        canvas.drawCircle(coordinateX, coordinateY, FACE_POSITION_RADIUS, paints.facePosition);
         canvas.drawText("id: " + mFaceId,
-                coordinateX + ID_X_OFFSET, coordinateY + ID_Y_OFFSET, mIdPaint);
+                coordinateX + ID_X_OFFSET, coordinateY + ID_Y_OFFSET, paints.id);
         canvas.drawText("happiness: "
-                        + String.format(Locale.US, "%.2f", mFace.getIsSmilingProbability()),
-                coordinateX - ID_X_OFFSET, coordinateY - ID_Y_OFFSET, mIdPaint);
+                        + String.format(Locale.US, "%.2f", mSmilingProbability),
+                coordinateX - ID_X_OFFSET, coordinateY - ID_Y_OFFSET, paints.id);
         canvas.drawText("right eye: "
-                        + String.format(Locale.US, "%.2f", mFace.getIsRightEyeOpenProbability()),
-                coordinateX + ID_X_OFFSET * 2, coordinateY + ID_Y_OFFSET * 2, mIdPaint);
+                        + String.format(Locale.US, "%.2f", mRightEyeOpenProbability),
+                coordinateX + ID_X_OFFSET * 2, coordinateY + ID_Y_OFFSET * 2, paints.id);
         canvas.drawText("left eye: "
-                        + String.format(Locale.US, "%.2f", mFace.getIsLeftEyeOpenProbability()),
-                coordinateX - ID_X_OFFSET * 2, coordinateY - ID_Y_OFFSET * 2, mIdPaint);
+                        + String.format(Locale.US, "%.2f", mLeftEyeOpenProbability),
+                coordinateX - ID_X_OFFSET * 2, coordinateY - ID_Y_OFFSET * 2, paints.id);
 
         // Draws a bounding box around the face.
-        float offsetX = scaleX(mFace.getWidth() / 2.0f);
-        float offsetY = scaleY(mFace.getHeight() / 2.0f);
+        float offsetX = scaleX(face.getWidth() / 2.0f);
+        float offsetY = scaleY(face.getHeight() / 2.0f);
         float left = coordinateX - offsetX;
         float top = coordinateY - offsetY;
         float right = coordinateX + offsetX;
         float bottom = coordinateY + offsetY;
-        canvas.drawRect(left, top, right, bottom, mBoxPaint);
+        canvas.drawRect(left, top, right, bottom, paints.box);
+
+        if (mLandmarksEnabled.get()) {
+            drawLandmarks(canvas, face, paints.landmark);
+            drawAxes(canvas, face, paints.box);
+        }
+    }
+
+    /**
+     * Draws every detected landmark of the face as a point.
+     */
+    void drawLandmarks(Canvas canvas, Face face, Paint paint) {
+        final List<Landmark> landmarks = face.getLandmarks();
+        final int count = Math.min(landmarks.size(), MAX_LANDMARKS);
+        if (count == 0) {
+            return;
+        }
+
+        for (int i = 0; i < count; ++i) {
+            final PointF position = landmarks.get(i).getPosition();
+            mLandmarkPoints[i * 2] = translateX(position.x);
+            mLandmarkPoints[i * 2 + 1] = translateY(position.y);
+        }
+        canvas.drawPoints(mLandmarkPoints, 0, count * 2, paint);
+    }
+
+    /**
+     * Draws the face's horizontal and vertical axes, rotated by its Euler Z (roll) angle.  The
+     * horizontal axis is also foreshortened by the Euler Y (yaw) angle, as seen under an
+     * orthographic projection.  The depth axis is left out: without a pitch angle it would only
+     * repeat the horizontal axis, and it would shrink to a point for a face looking straight at
+     * the camera.
+     */
+    void drawAxes(Canvas canvas, Face face, Paint paint) {
+        final float length = face.getWidth() / 2.0f;
+        final float centerX = face.getPosition().x + length;
+        final float centerY = face.getPosition().y + face.getHeight() / 2.0f;
+
+        final double yaw = Math.toRadians(face.getEulerY());
+        final double roll = Math.toRadians(face.getEulerZ());
+        final float cosYaw = (float) Math.cos(yaw);
+        final float sinRoll = (float) Math.sin(roll);
+        final float cosRoll = (float) Math.cos(roll);
+
+        setAxisLine(0, centerX, centerY, length, cosYaw, 0.0f, sinRoll, cosRoll);
+        setAxisLine(1, centerX, centerY, length, 0.0f, 1.0f, sinRoll, cosRoll);
+        canvas.drawLines(mAxisLines, paint);
+    }
+
+    /**
+     * Rotates an axis, already yawed to ({@code axisX}, {@code axisY}), by the roll angle and
+     * stores the resulting line from the face center in view coordinates.  Endpoints go through
+     * {@link #translateX(float)} so that the axes are mirrored along with the front camera.
+     */
+    private void setAxisLine(int index, float centerX, float centerY, float length,
+            float axisX, float axisY, float sinRoll, float cosRoll) {
+        final float endX = centerX + (axisX * cosRoll + axisY * sinRoll) * length;
+        final float endY = centerY + (axisY * cosRoll - axisX * sinRoll) * length;
+
+        final int offset = index * 4;
+        mAxisLines[offset] = translateX(centerX);
+        mAxisLines[offset + 1] = translateY(centerY);
+        mAxisLines[offset + 2] = translateX(endX);
+        mAxisLines[offset + 3] = translateY(endY);
+    }
+
+
+    /**
+     * Paints for a single color, shared by every graphic using that color.  They are configured
+     * once here and never modified afterwards, so they may be drawn with from any graphic.
+     */
+    private static final class PaintSet {
+        final int color;
+        final Paint facePosition;
+        final Paint id;
+        final Paint box;
+        final Paint landmark;
+
+        PaintSet(int color) {
+            this.color = color;
+
+            facePosition = new Paint();
+            facePosition.setColor(color);
+
+            id = new Paint();
+            id.setColor(color);
+            id.setTextSize(ID_TEXT_SIZE);
+
+            box = new Paint();
+            box.setColor(color);
+            box.setStyle(Paint.Style.STROKE);
+            box.setStrokeWidth(BOX_STROKE_WIDTH);
+
+            landmark = new Paint();
+            landmark.setColor(color);
+            landmark.setStrokeWidth(LANDMARK_POINT_SIZE);
+            landmark.setStrokeCap(Paint.Cap.ROUND);
+        }
     }
 }
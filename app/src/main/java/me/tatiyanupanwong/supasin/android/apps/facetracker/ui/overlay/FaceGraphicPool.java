@@ -0,0 +1,79 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread-safe pool of {@link FaceGraphic} instances for an overlay.  Graphics are created up
+ * front, so acquiring one when a face appears and releasing it when the face is gone does not
+ * allocate unless more faces are tracked at once than the pool holds.
+ */
+public final class FaceGraphicPool {
+
+    private final Object mLock = new Object();
+    private final ArrayDeque<FaceGraphic> mFreeGraphics;
+    private final AtomicBoolean mLandmarksEnabled = new AtomicBoolean();
+
+    private final GraphicOverlay mOverlay;
+    private final int mCapacity;
+
+    public FaceGraphicPool(GraphicOverlay overlay, int capacity) {
+        mOverlay = overlay;
+        mCapacity = capacity;
+        mFreeGraphics = new ArrayDeque<>(capacity);
+
+        for (int i = 0; i < capacity; ++i) {
+            mFreeGraphics.push(new FaceGraphic(overlay, this, mLandmarksEnabled));
+        }
+    }
+
+    /**
+     * Returns a graphic ready to track a new face, with the next color in rotation.
+     */
+    public FaceGraphic acquire() {
+        FaceGraphic graphic;
+        synchronized (mLock) {
+            graphic = mFreeGraphics.poll();
+            if (graphic == null) {
+                graphic = new FaceGraphic(mOverlay, this, mLandmarksEnabled);
+            }
+            graphic.mAcquired = true;
+        }
+
+        graphic.reset();
+        return graphic;
+    }
+
+    /**
+     * Sets whether landmarks are drawn, for every graphic of the pool whether it is in use or
+     * not.  Graphics read the setting when they are drawn, so it can be changed from any thread.
+     */
+    public void setLandmarksEnabled(boolean enabled) {
+        mLandmarksEnabled.set(enabled);
+        mOverlay.postInvalidate();
+    }
+
+    /**
+     * Returns a graphic to the pool.  The graphic should already have been removed from the
+     * overlay and must not be used by the caller afterwards.
+     *
+     * @throws IllegalArgumentException if the graphic was not acquired from this pool
+     * @throws IllegalStateException if the graphic has already been released
+     */
+    public void release(FaceGraphic graphic) {
+        if (graphic.mPool != this) {
+            throw new IllegalArgumentException("The graphic does not come from this pool.");
+        }
+
+        synchronized (mLock) {
+            if (!graphic.mAcquired) {
+                throw new IllegalStateException("The graphic has already been released.");
+            }
+
+            graphic.mAcquired = false;
+            if (mFreeGraphics.size() < mCapacity) {
+                mFreeGraphics.push(graphic);
+            }
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Detector.Detections;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.Tracker;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.FaceDetector;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs still images and recorded video clips through the same detector and tracker path used by
+ * the live camera, without requiring a preview surface.
+ * <p>
+ * Files are distributed across one worker per available core.  Each worker owns its own detector
+ * and decodes a single frame at a time through the {@link FrameReader}, which reports the most
+ * memory it holds while doing so.  The number of workers is capped so that their decoded frames
+ * fit in the memory budget, by default a quarter of the memory class of the device, regardless
+ * of the size of the input.  Results are streamed to the {@link Listener} as soon as each frame
+ * has been processed.
+ * <p>
+ * The detector and the decoder can be swapped through a {@link DetectorFactory} and a
+ * {@link FrameReader}, e.g. for synthetic frames and a fake detector in a headless harness.  On
+ * completion, {@link Stats} reports throughput, decode time and the per-frame latency of
+ * detection and tracking, also as a {@link PerformanceReport} through {@link Stats#toReport()}.
+ */
+public final class BatchFaceProcessor {
+    private static final String TAG = BatchFaceProcessor.class.getSimpleName();
+
+    private final DetectorFactory mDetectorFactory;
+    private final FrameReader mFrameReader;
+    private final TrackerFactory mTrackerFactory;
+    private final Listener mListener;
+
+    private final Queue<File> mPendingFiles = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mFrameCount = new AtomicInteger();
+    private final AtomicInteger mFileCount = new AtomicInteger();
+    private final AtomicInteger mFailedFileCount = new AtomicInteger();
+    private final AtomicInteger mActiveWorkers = new AtomicInteger();
+
+    private final Object mLatencyLock = new Object();
+    private final LatencyHistogram mLatency = new LatencyHistogram();
+    private long mDecodeNanos;
+
+    private long mMemoryBudgetBytes = Long.MAX_VALUE;
+    private long mStartNanos;
+    private int mWorkerCount;
+    private volatile boolean mCancelled;
+
+    public BatchFaceProcessor(Context context, TrackerFactory trackerFactory, Listener listener) {
+        this(newFaceDetectorFactory(context.getApplicationContext()), new MediaFrameReader(),
+                trackerFactory, listener);
+
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        mMemoryBudgetBytes = activityManager.getMemoryClass() * 1024L * 1024L / 4;
+    }
+
+    public BatchFaceProcessor(DetectorFactory detectorFactory, FrameReader frameReader,
+            TrackerFactory trackerFactory, Listener listener) {
+        mDetectorFactory = detectorFactory;
+        mFrameReader = frameReader;
+        mTrackerFactory = trackerFactory;
+        mListener = listener;
+    }
+
+    /**
+     * Sets the memory that decoded frames may take across all workers.  At least one worker runs
+     * whatever the budget.  Takes effect on the next call to {@link #start(List)}.
+     */
+    public void setMemoryBudget(long budgetBytes) {
+        mMemoryBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * Starts processing the supplied files in the background.  Each file may be either a still
+     * image or a video clip.  Must not be called again until the previous run has completed,
+     * which it has as soon as {@link Listener#onComplete(Stats)} is called, including from that
+     * callback.
+     */
+    public void start(List<File> files) {
+        final long workersInBudget = mMemoryBudgetBytes / mFrameReader.getMaxMemoryBytes();
+        final int workerCount = (int) Math.max(1, Math.min(workersInBudget,
+                Math.min(Runtime.getRuntime().availableProcessors(), files.size())));
+        if (!mActiveWorkers.compareAndSet(0, workerCount)) {
+            throw new IllegalStateException("Batch processing is already running.");
+        }
+
+        mPendingFiles.clear();
+        mPendingFiles.addAll(files);
+        mFrameCount.set(0);
+        mFileCount.set(0);
+        mFailedFileCount.set(0);
+        mCancelled = false;
+        synchronized (mLatencyLock) {
+            mLatency.clear();
+            mDecodeNanos = 0;
+        }
+
+        mWorkerCount = workerCount;
+        mStartNanos = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        for (int i = 0; i < workerCount; ++i) {
+            executor.execute(new Worker());
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Stops processing after the frames currently being processed.  Files not yet started are
+     * skipped, and the listener still receives {@link Listener#onComplete(Stats)}.
+     */
+    public void cancel() {
+        mCancelled = true;
+        mPendingFiles.clear();
+    }
+
+
+    private static DetectorFactory newFaceDetectorFactory(Context context) {
+        // Only the largest face of every frame is tracked, see processFile().
+        return () -> CameraSourceHelper.createFaceDetector(context, FaceDetector.NO_LANDMARKS);
+    }
+
+    private void onWorkerFinished(LatencyHistogram latency, long decodeNanos) {
+        final long elapsedNanos = System.nanoTime() - mStartNanos;
+
+        Stats stats;
+        synchronized (mLatencyLock) {
+            mLatency.add(latency);
+            mDecodeNanos += decodeNanos;
+            if (mActiveWorkers.get() != 1) {
+                mActiveWorkers.decrementAndGet();
+                return;
+            }
+
+            // Files left over when every worker failed to start were never processed.
+            if (!mCancelled) {
+                mFailedFileCount.addAndGet(mPendingFiles.size());
+            }
+            mPendingFiles.clear();
+
+            stats = new Stats(mFileCount.get(), mFailedFileCount.get(), mFrameCount.get(),
+                    mWorkerCount, elapsedNanos, mDecodeNanos, mLatency);
+            mActiveWorkers.set(0);
+        }
+
+        Log.i(TAG, stats.toString());
+        Log.i(TAG, stats.toReport().toJson());
+        mListener.onComplete(stats);
+    }
+
+    private final class Worker implements Runnable, FrameConsumer {
+        private final LatencyHistogram mWorkerLatency = new LatencyHistogram();
+        private Detector<Face> mDetector;
+        private long mWorkerDecodeNanos;
+        private long mFileProcessingNanos;
+        private long mFrameStartNanos;
+
+        @Override
+        public void run() {
+            try {
+                mDetector = mDetectorFactory.create();
+            } catch (RuntimeException | OutOfMemoryError e) {
+                // Files are left to the other workers, if any of them could create a detector.
+                Log.e(TAG, "Unable to create a detector.", e);
+            }
+
+            try {
+                File file;
+                while (mDetector != null && !mCancelled
+                        && (file = mPendingFiles.poll()) != null) {
+                    processFile(file);
+                }
+            } finally {
+                if (mDetector != null) {
+                    mDetector.release();
+                }
+                onWorkerFinished(mWorkerLatency, mWorkerDecodeNanos);
+            }
+        }
+
+        private void processFile(File file) {
+            // Every file is an independent sequence, so it gets a fresh processor and tracker.
+            Detector.Processor<Face> processor = new ResultProcessor(file,
+                    CameraSourceHelper.createFaceProcessor(mDetector,
+                            mTrackerFactory.create(file)));
+            mDetector.setProcessor(processor);
+
+            final long startNanos = System.nanoTime();
+            mFileProcessingNanos = 0;
+            try {
+                if (mFrameReader.read(file, this)) {
+                    mFileCount.incrementAndGet();
+                } else {
+                    Log.w(TAG, "Skipping " + file + ", not a supported image or video.");
+                }
+            } catch (RuntimeException | OutOfMemoryError e) {
+                Log.e(TAG, "Unable to process " + file + ".", e);
+                mFailedFileCount.incrementAndGet();
+            } finally {
+                // Whatever the reader spent outside of onFrame() went into decoding.
+                mWorkerDecodeNanos += System.nanoTime() - startNanos - mFileProcessingNanos;
+                processor.release();
+            }
+        }
+
+        @Override
+        public boolean onFrame(Frame frame) {
+            mFrameStartNanos = System.nanoTime();
+            mDetector.receiveFrame(frame);
+
+            mFileProcessingNanos += System.nanoTime() - mFrameStartNanos;
+            mFrameCount.incrementAndGet();
+            return !mCancelled;
+        }
+
+
+        /**
+         * Forwards detections to the tracking processor, then streams them out to the listener.
+         * The frame latency is recorded in between, so that it covers detection and tracking but
+         * not the listener.
+         */
+        private final class ResultProcessor implements Detector.Processor<Face> {
+            private final File mFile;
+            private final Detector.Processor<Face> mDelegate;
+            private boolean mReleased;
+
+            ResultProcessor(File file, Detector.Processor<Face> delegate) {
+                mFile = file;
+                mDelegate = delegate;
+            }
+
+            @Override
+            public void receiveDetections(Detections<Face> detections) {
+                mDelegate.receiveDetections(detections);
+                mWorkerLatency.record(System.nanoTime() - mFrameStartNanos);
+
+                mListener.onFrameProcessed(mFile, detections);
+            }
+
+            @Override
+            public void release() {
+                // Released both at the end of its file and again when the detector is released.
+                if (!mReleased) {
+                    mReleased = true;
+                    mDelegate.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Summary of a completed batch run.
+     */
+    public static final class Stats {
+        private final int mFileCount;
+        private final int mFailedFileCount;
+        private final int mFrameCount;
+        private final int mWorkerCount;
+        private final long mElapsedNanos;
+        private final long mDecodeNanos;
+        private final long mMeanLatencyNanos;
+        private final long mP50LatencyNanos;
+        private final long mP95LatencyNanos;
+        private final long mP99LatencyNanos;
+        private final long mMaxLatencyNanos;
+
+        Stats(int fileCount, int failedFileCount, int frameCount, int workerCount,
+                long elapsedNanos, long decodeNanos, LatencyHistogram latency) {
+            mFileCount = fileCount;
+            mFailedFileCount = failedFileCount;
+            mFrameCount = frameCount;
+            mWorkerCount = workerCount;
+            mElapsedNanos = elapsedNanos;
+            mDecodeNanos = decodeNanos;
+            mMeanLatencyNanos = latency.getMeanNanos();
+            mP50LatencyNanos = latency.getPercentileNanos(50);
+            mP95LatencyNanos = latency.getPercentileNanos(95);
+            mP99LatencyNanos = latency.getPercentileNanos(99);
+            mMaxLatencyNanos = latency.getMaxNanos();
+        }
+
+        public int getFileCount() {
+            return mFileCount;
+        }
+
+        /**
+         * Returns the number of files that could not be processed because of an error, as
+         * opposed to being skipped for not being a supported image or video.
+         */
+        public int getFailedFileCount() {
+            return mFailedFileCount;
+        }
+
+        public int getFrameCount() {
+            return mFrameCount;
+        }
+
+        public int getWorkerCount() {
+            return mWorkerCount;
+        }
+
+        public long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+
+        /**
+         * Returns the time spent decoding frames, summed over all workers.
+         */
+        public long getDecodeNanos() {
+            return mDecodeNanos;
+        }
+
+        /**
+         * Returns the mean time spent detecting and tracking a single frame.  Neither decoding nor
+         * the {@link Listener#onFrameProcessed(File, Detections)} callback are included.
+         */
+        public long getMeanLatencyNanos() {
+            return mMeanLatencyNanos;
+        }
+
+        /**
+         * Returns the given percentile of the per-frame detection and tracking time.  The value
+         * is accurate to 0.1 ms.
+         *
+         * @param percentile one of 50, 95 or 99
+         */
+        public long getPercentileLatencyNanos(int percentile) {
+            switch (percentile) {
+                case 50:
+                    return mP50LatencyNanos;
+                case 95:
+                    return mP95LatencyNanos;
+                case 99:
+                    return mP99LatencyNanos;
+                default:
+                    throw new IllegalArgumentException("Unsupported percentile: " + percentile);
+            }
+        }
+
+        public long getMaxLatencyNanos() {
+            return mMaxLatencyNanos;
+        }
+
+        public float getFramesPerSecondPerCore() {
+            if (mElapsedNanos == 0) {
+                return 0.0f;
+            }
+            return mFrameCount * 1e9f / mElapsedNanos / mWorkerCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "Processed %d frames from %d files (%d failed) in %d ms on %d cores"
+                            + " (%.2f frames/s/core), %d ms spent decoding",
+                    mFrameCount, mFileCount, mFailedFileCount, mElapsedNanos / 1000000,
+                    mWorkerCount, getFramesPerSecondPerCore(), mDecodeNanos / 1000000);
+        }
+
+        /**
+         * Returns the stats as a {@link PerformanceReport}, e.g. to be written to a file and
+         * diffed between builds.
+         */
+        public PerformanceReport toReport() {
+            return new PerformanceReport()
+                    .add("files", mFileCount)
+                    .add("failedFiles", mFailedFileCount)
+                    .addThroughput(mFrameCount, mWorkerCount, mElapsedNanos)
+                    .add("decodeNanos", mDecodeNanos)
+                    .addLatency(mMeanLatencyNanos, mP50LatencyNanos, mP95LatencyNanos,
+                            mP99LatencyNanos, mMaxLatencyNanos);
+        }
+    }
+
+
+    public interface DetectorFactory {
+        /**
+         * Creates the detector owned by a single worker.  It is released when the worker is done.
+         */
+        Detector<Face> create();
+    }
+
+    public interface FrameReader {
+        /**
+         * Decodes the frames of the supplied file in order, handing each one to the consumer
+         * before the next one is decoded.  Called from the worker threads.
+         *
+         * @return {@code false} if the file is not in a format supported by this reader
+         */
+        boolean read(File file, FrameConsumer consumer);
+
+        /**
+         * Returns the most memory held by a single call to {@link #read(File, FrameConsumer)},
+         * used to fit the workers in the memory budget.
+         */
+        long getMaxMemoryBytes();
+    }
+
+    public interface FrameConsumer {
+        /**
+         * Processes a decoded frame.  The frame and its image data are only valid until this
+         * returns.
+         *
+         * @return {@code false} if the remaining frames of the file should be skipped
+         */
+        boolean onFrame(Frame frame);
+    }
+
+    public interface TrackerFactory {
+        /**
+         * Creates the tracker receiving the faces detected in the supplied file.
+         */
+        Tracker<Face> create(File file);
+    }
+
+    /**
+     * Receives batch results.  Callbacks are made from the worker threads.
+     */
+    public interface Listener {
+        void onFrameProcessed(File file, Detections<Face> detections);
+
+        void onComplete(Stats stats);
+    }
+}
@@ -1,6 +1,7 @@
 package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
 
 import android.app.Activity;
+import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.design.widget.Snackbar;
 import android.support.v4.app.ActivityCompat;
@@ -10,6 +11,7 @@ import android.view.View;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.vision.CameraSource;
+import com.google.android.gms.vision.Detector;
 import com.google.android.gms.vision.Tracker;
 import com.google.android.gms.vision.face.Face;
 import com.google.android.gms.vision.face.FaceDetector;
@@ -36,6 +38,7 @@ public final class CameraSourceHelper {
     private final Callback mCallback;
 
     private CameraSource mCameraSource;
+    private int mLandmarkType = FaceDetector.NO_LANDMARKS;
 
     public CameraSourceHelper(Activity activity, Tracker<Face> faceTracker, Callback callback) {
         mActivity = activity;
@@ -76,6 +79,25 @@ public final class CameraSourceHelper {
         }
     }
 
+    /**
+     * Enables or disables landmark detection.  A running camera source is recreated with the
+     * same facing for the change to take effect.
+     */
+    public void setLandmarksEnabled(boolean enabled) {
+        final int landmarkType = enabled ? FaceDetector.ALL_LANDMARKS : FaceDetector.NO_LANDMARKS;
+        if (mLandmarkType == landmarkType) {
+            return;
+        }
+
+        mLandmarkType = landmarkType;
+        if (mCameraSource != null) {
+            final int facing = mCameraSource.getCameraFacing();
+            mCameraSource.release();
+            createCameraSource(facing);
+            startCameraSource();
+        }
+    }
+
 
     public boolean onRequestPermissionsResult(int requestCode, @NonNull int[] grantResults) {
         if (requestCode != REQUEST_CAMERA_PERMISSION) {
@@ -109,14 +131,37 @@ public final class CameraSourceHelper {
     }
 
     private void createCameraSource(int facing) {
-        FaceDetector detector = new FaceDetector.Builder(mActivity)
+        FaceDetector detector = createFaceDetector(mActivity, mLandmarkType);
+        detector.setProcessor(createFaceProcessor(detector, mFaceTracker));
+
+        mCameraSource = new CameraSource.Builder(mActivity, detector)
+                .setRequestedPreviewSize(640, 480)
+                .setFacing(facing)
+                .setRequestedFps(30.0f)
+                .build();
+    }
+
+    /**
+     * Creates the processor attached to the face detector by the live camera and the batch
+     * processing paths, which forwards the largest face of every frame to the given tracker.
+     */
+    public static Detector.Processor<Face> createFaceProcessor(Detector<Face> detector,
+            Tracker<Face> tracker) {
+        return new LargestFaceFocusingProcessor(detector, tracker);
+    }
+
+    /**
+     * Creates the face detector shared by the live camera and the batch processing paths.  The
+     * caller is responsible for attaching a processor to the returned detector.
+     */
+    static FaceDetector createFaceDetector(Context context, int landmarkType) {
+        FaceDetector detector = new FaceDetector.Builder(context)
+                .setLandmarkType(landmarkType)
                 .setClassificationType(FaceDetector.ALL_CLASSIFICATIONS)
                 .setMode(FaceDetector.ACCURATE_MODE)
                 .setProminentFaceOnly(true)
                 .build();
 
-        detector.setProcessor(new LargestFaceFocusingProcessor(detector, mFaceTracker));
-
         if (!detector.isOperational()) {
             // Note: The first time that an app using face API is installed on a device, GMS will
             // download a native library to the device in order to do detection.  Usually this
@@ -129,11 +174,7 @@ public final class CameraSourceHelper {
             Log.w(TAG, "Face detector dependencies are not yet available.");
         }
 
-        mCameraSource = new CameraSource.Builder(mActivity, detector)
-                .setRequestedPreviewSize(640, 480)
-                .setFacing(facing)
-                .setRequestedFps(30.0f)
-                .build();
+        return detector;
     }
 
     private void startCameraSource() {
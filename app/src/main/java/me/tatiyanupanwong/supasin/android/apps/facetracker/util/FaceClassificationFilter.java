@@ -0,0 +1,88 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import com.google.android.gms.vision.face.Face;
+
+/**
+ * Smooths the classification probabilities of a single tracked face.  The raw values remain
+ * available from the {@link Face} itself, while the filtered values are exposed here.
+ * <p>
+ * Each signal has its own {@link OneEuroFilter} which can be tuned independently.  Probabilities
+ * that were not computed for a frame are passed through as
+ * {@link Face#UNCOMPUTED_PROBABILITY} and restart the filter for that signal.  Like the filters
+ * themselves, instances are not thread-safe and belong to the tracker of a single face.
+ */
+public final class FaceClassificationFilter {
+    private static final float DEFAULT_MIN_CUTOFF = 1.0f;
+    private static final float DEFAULT_BETA = 0.1f;
+    private static final float DEFAULT_DERIVATIVE_CUTOFF = 1.0f;
+
+    private final OneEuroFilter mSmilingFilter = newDefaultFilter();
+    private final OneEuroFilter mLeftEyeOpenFilter = newDefaultFilter();
+    private final OneEuroFilter mRightEyeOpenFilter = newDefaultFilter();
+
+    private float mSmilingProbability = Face.UNCOMPUTED_PROBABILITY;
+    private float mLeftEyeOpenProbability = Face.UNCOMPUTED_PROBABILITY;
+    private float mRightEyeOpenProbability = Face.UNCOMPUTED_PROBABILITY;
+
+    /**
+     * Feeds the probabilities of the face detected in the most recent frame.
+     */
+    public void update(Face face, long timestampMillis) {
+        mSmilingProbability = filter(mSmilingFilter,
+                face.getIsSmilingProbability(), timestampMillis);
+        mLeftEyeOpenProbability = filter(mLeftEyeOpenFilter,
+                face.getIsLeftEyeOpenProbability(), timestampMillis);
+        mRightEyeOpenProbability = filter(mRightEyeOpenFilter,
+                face.getIsRightEyeOpenProbability(), timestampMillis);
+    }
+
+    /**
+     * Clears the filtered state, typically when a different face starts being tracked.
+     */
+    public void reset() {
+        mSmilingFilter.reset();
+        mLeftEyeOpenFilter.reset();
+        mRightEyeOpenFilter.reset();
+
+        mSmilingProbability = Face.UNCOMPUTED_PROBABILITY;
+        mLeftEyeOpenProbability = Face.UNCOMPUTED_PROBABILITY;
+        mRightEyeOpenProbability = Face.UNCOMPUTED_PROBABILITY;
+    }
+
+    public float getSmilingProbability() {
+        return mSmilingProbability;
+    }
+
+    public float getLeftEyeOpenProbability() {
+        return mLeftEyeOpenProbability;
+    }
+
+    public float getRightEyeOpenProbability() {
+        return mRightEyeOpenProbability;
+    }
+
+    public OneEuroFilter getSmilingFilter() {
+        return mSmilingFilter;
+    }
+
+    public OneEuroFilter getLeftEyeOpenFilter() {
+        return mLeftEyeOpenFilter;
+    }
+
+    public OneEuroFilter getRightEyeOpenFilter() {
+        return mRightEyeOpenFilter;
+    }
+
+
+    private static OneEuroFilter newDefaultFilter() {
+        return new OneEuroFilter(DEFAULT_MIN_CUTOFF, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF);
+    }
+
+    private static float filter(OneEuroFilter filter, float probability, long timestampMillis) {
+        if (probability < 0.0f) {
+            filter.reset();
+            return Face.UNCOMPUTED_PROBABILITY;
+        }
+        return filter.filter(probability, timestampMillis);
+    }
+}
@@ -0,0 +1,71 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+/**
+ * Fixed-size histogram of latencies, so that recording a sample neither allocates nor grows with
+ * the number of frames.  Samples are bucketed with a resolution of {@link #BUCKET_WIDTH_NANOS};
+ * anything above the last bucket is only reflected in the maximum.  Not thread-safe.
+ */
+final class LatencyHistogram {
+    private static final long BUCKET_WIDTH_NANOS = 100000L;
+    private static final int BUCKET_COUNT = 2000;
+
+    private final long[] mCounts = new long[BUCKET_COUNT + 1];
+    private long mCount;
+    private long mSumNanos;
+    private long mMaxNanos;
+
+    void record(long latencyNanos) {
+        final int bucket = (int) Math.min(latencyNanos / BUCKET_WIDTH_NANOS, BUCKET_COUNT);
+        mCounts[bucket]++;
+        mCount++;
+        mSumNanos += latencyNanos;
+        mMaxNanos = Math.max(mMaxNanos, latencyNanos);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < mCounts.length; ++i) {
+            mCounts[i] += other.mCounts[i];
+        }
+        mCount += other.mCount;
+        mSumNanos += other.mSumNanos;
+        mMaxNanos = Math.max(mMaxNanos, other.mMaxNanos);
+    }
+
+    void clear() {
+        for (int i = 0; i < mCounts.length; ++i) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mSumNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    long getMeanNanos() {
+        return mCount == 0 ? 0 : mSumNanos / mCount;
+    }
+
+    long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile, capped at the maximum.
+     *
+     * @param percentile between 0 and 100
+     */
+    long getPercentileNanos(float percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(mCount * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min((i + 1) * BUCKET_WIDTH_NANOS, mMaxNanos);
+            }
+        }
+        return mMaxNanos;
+    }
+}
@@ -0,0 +1,412 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageFormat;
+import android.media.Image;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo.CodecCapabilities;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.util.Log;
+
+import com.google.android.gms.vision.Frame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes still images through {@link BitmapFactory} and video clips through
+ * {@link MediaExtractor} and {@link MediaCodec}.  Every frame is downscaled to at most
+ * {@link #MAX_FRAME_DIMENSION} pixels on its longest side and released as soon as it has been
+ * consumed, so a single {@link #read(File, BatchFaceProcessor.FrameConsumer)} call holds at most
+ * {@link #getMaxMemoryBytes()} of heap.
+ * <p>
+ * Video clips are decoded sequentially in a single pass, and every decoded YUV image is
+ * subsampled straight into a reused NV21 buffer, so no full-resolution frame ever reaches the
+ * heap.  Only when no decoder provides YUV 4:2:0 output does the reader fall back to
+ * {@link MediaMetadataRetriever}, which seeks back to the preceding sync frame and decodes
+ * forward for every sampled frame.  Below API 27, that fallback also decodes every sample at full
+ * resolution before it is downscaled, beyond the memory reported by {@link #getMaxMemoryBytes()}.
+ */
+final class MediaFrameReader implements BatchFaceProcessor.FrameReader {
+    private static final String TAG = MediaFrameReader.class.getSimpleName();
+
+    /** Longest side of a decoded frame, matching the requested camera preview size. */
+    private static final int MAX_FRAME_DIMENSION = 640;
+
+    /**
+     * Worst case of a still image: subsampled to just under twice {@link #MAX_FRAME_DIMENSION},
+     * then downscaled into a second bitmap.  A video frame needs less than the second bitmap.
+     */
+    private static final long MAX_MEMORY_BYTES =
+            4L * (2 * MAX_FRAME_DIMENSION) * (2 * MAX_FRAME_DIMENSION)
+                    + 4L * MAX_FRAME_DIMENSION * MAX_FRAME_DIMENSION;
+
+    /** Sampling interval of the seeking fallback, matching the requested camera frame rate. */
+    private static final long VIDEO_FRAME_INTERVAL_US = 1000000L / 30;
+
+    private static final long DECODER_TIMEOUT_US = 10000;
+
+    // Format keys only given constants in later API levels.
+    private static final String KEY_ROTATION = "rotation-degrees";
+    private static final String KEY_STRIDE = "stride";
+    private static final String KEY_SLICE_HEIGHT = "slice-height";
+
+    @Override
+    public boolean read(File file, BatchFaceProcessor.FrameConsumer consumer) {
+        Bitmap image = decodeImage(file);
+        if (image != null) {
+            consume(downscale(image), 0, 0, consumer);
+            return true;
+        }
+
+        return readVideo(file, consumer);
+    }
+
+    @Override
+    public long getMaxMemoryBytes() {
+        return MAX_MEMORY_BYTES;
+    }
+
+
+    private static boolean readVideo(File file, BatchFaceProcessor.FrameConsumer consumer) {
+        MediaExtractor extractor = new MediaExtractor();
+        boolean decoded;
+        try {
+            extractor.setDataSource(file.getPath());
+            final int track = selectVideoTrack(extractor);
+            if (track < 0) {
+                return false;
+            }
+
+            extractor.selectTrack(track);
+            decoded = decodeSequentially(extractor, extractor.getTrackFormat(track), consumer);
+        } catch (IOException e) {
+            // Thrown by setDataSource() when the file is not a container it can open.
+            return false;
+        } finally {
+            extractor.release();
+        }
+
+        if (decoded) {
+            return true;
+        }
+
+        Log.w(TAG, "No YUV 4:2:0 decoder for " + file + ", seeking through it instead.");
+        return readVideoBySeeking(file, consumer);
+    }
+
+    private static int selectVideoTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); ++i) {
+            final String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("video/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the selected track from start to end.
+     *
+     * @return {@code false}, before any frame has been consumed, if no decoder can provide YUV
+     *         4:2:0 output for the track
+     */
+    private static boolean decodeSequentially(MediaExtractor extractor, MediaFormat format,
+            BatchFaceProcessor.FrameConsumer consumer) {
+        final MediaCodec decoder;
+        try {
+            decoder = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                        CodecCapabilities.COLOR_FormatYUV420Flexible);
+            }
+
+            try {
+                decoder.configure(format, null, null, 0);
+                decoder.start();
+            } catch (IllegalStateException e) {
+                return false;
+            }
+
+            return new SequentialDecoder(extractor, decoder, format).decode(consumer);
+        } finally {
+            decoder.release();
+        }
+    }
+
+    private static boolean readVideoBySeeking(File file,
+            BatchFaceProcessor.FrameConsumer consumer) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(file.getPath());
+            String duration = retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_DURATION);
+            if (duration == null) {
+                return false;
+            }
+
+            long durationUs = Long.parseLong(duration) * 1000;
+            int frameIndex = 0;
+            for (long timeUs = 0; timeUs < durationUs; timeUs += VIDEO_FRAME_INTERVAL_US) {
+                Bitmap frame = getFrameAtTime(retriever, timeUs);
+                if (frame != null && !consume(downscale(frame), frameIndex++, timeUs / 1000,
+                        consumer)) {
+                    break;
+                }
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            // Thrown by setDataSource() when the file is not a media file it can open.
+            return false;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private static Bitmap getFrameAtTime(MediaMetadataRetriever retriever, long timeUs) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            return retriever.getScaledFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST,
+                    MAX_FRAME_DIMENSION, MAX_FRAME_DIMENSION);
+        }
+        return retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST);
+    }
+
+    private static boolean consume(Bitmap bitmap, int frameIndex, long timestampMillis,
+            BatchFaceProcessor.FrameConsumer consumer) {
+        try {
+            Frame frame = new Frame.Builder()
+                    .setBitmap(bitmap)
+                    .setId(frameIndex)
+                    .setTimestampMillis(timestampMillis)
+                    .build();
+            return consumer.onFrame(frame);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private static Bitmap decodeImage(File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // Subsampling only goes down in powers of two, density scaling takes care of the rest.
+        int longestSide = Math.max(options.outWidth, options.outHeight);
+        int sampleSize = 1;
+        while (longestSide / (sampleSize * 2) >= MAX_FRAME_DIMENSION) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        if (longestSide / sampleSize > MAX_FRAME_DIMENSION) {
+            options.inScaled = true;
+            options.inDensity = longestSide / sampleSize;
+            options.inTargetDensity = MAX_FRAME_DIMENSION;
+        }
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    private static Bitmap downscale(Bitmap bitmap) {
+        int longestSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longestSide <= MAX_FRAME_DIMENSION) {
+            return bitmap;
+        }
+
+        float scale = (float) MAX_FRAME_DIMENSION / longestSide;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                Math.round(bitmap.getWidth() * scale), Math.round(bitmap.getHeight() * scale),
+                true);
+        bitmap.recycle();
+        return scaled;
+    }
+
+    private static int getInteger(MediaFormat format, String key, int defaultValue) {
+        return format.containsKey(key) ? format.getInteger(key) : defaultValue;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.clear();
+        duplicate.position(offset);
+        return duplicate.slice();
+    }
+
+
+    /**
+     * Feeds the samples of a track to a started decoder and turns its output into NV21 frames,
+     * all sharing one buffer of the downscaled size.
+     */
+    private static final class SequentialDecoder {
+        private final MediaExtractor mExtractor;
+        private final MediaCodec mDecoder;
+        private final MediaCodec.BufferInfo mBufferInfo = new MediaCodec.BufferInfo();
+
+        private final int mWidth;
+        private final int mHeight;
+        private final int mRotation;
+        private final int mStep;
+        private final ByteBuffer mImageData;
+
+        /** Layout of the output buffers, only used below API 21. */
+        private MediaFormat mOutputFormat;
+
+        SequentialDecoder(MediaExtractor extractor, MediaCodec decoder, MediaFormat format) {
+            mExtractor = extractor;
+            mDecoder = decoder;
+            mWidth = format.getInteger(MediaFormat.KEY_WIDTH);
+            mHeight = format.getInteger(MediaFormat.KEY_HEIGHT);
+            mRotation = getInteger(format, KEY_ROTATION, 0) / 90 % 4;
+            mStep = Nv21Downscaler.getStep(mWidth, mHeight, MAX_FRAME_DIMENSION);
+            mImageData = ByteBuffer.wrap(new byte[Nv21Downscaler.getScaledSize(mWidth, mStep)
+                    * Nv21Downscaler.getScaledSize(mHeight, mStep) * 3 / 2]);
+        }
+
+        boolean decode(BatchFaceProcessor.FrameConsumer consumer) {
+            boolean inputDone = false;
+            int frameIndex = 0;
+            while (true) {
+                if (!inputDone) {
+                    inputDone = queueInput();
+                }
+
+                final int index = mDecoder.dequeueOutputBuffer(mBufferInfo, DECODER_TIMEOUT_US);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    mOutputFormat = mDecoder.getOutputFormat();
+                } else if (index >= 0) {
+                    final boolean endOfStream =
+                            (mBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                    final long timestampMillis = mBufferInfo.presentationTimeUs / 1000;
+                    final boolean hasImage = mBufferInfo.size > 0;
+
+                    if (hasImage && !copyOutput(index)) {
+                        mDecoder.releaseOutputBuffer(index, false);
+                        if (frameIndex == 0) {
+                            return false;
+                        }
+                        throw new IllegalStateException("Decoder switched to an unsupported "
+                                + "color format: " + mOutputFormat);
+                    }
+                    mDecoder.releaseOutputBuffer(index, false);
+
+                    if (hasImage && !consumer.onFrame(buildFrame(frameIndex++, timestampMillis))) {
+                        return true;
+                    }
+                    if (endOfStream) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Queues the next sample of the track, if the decoder has room for it.
+         *
+         * @return {@code true} once the end of the track has been queued
+         */
+        @SuppressWarnings("deprecation")
+        private boolean queueInput() {
+            final int index = mDecoder.dequeueInputBuffer(DECODER_TIMEOUT_US);
+            if (index < 0) {
+                return false;
+            }
+
+            final ByteBuffer buffer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                    ? mDecoder.getInputBuffer(index)
+                    : mDecoder.getInputBuffers()[index];
+            final int size = mExtractor.readSampleData(buffer, 0);
+            if (size < 0) {
+                mDecoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                return true;
+            }
+
+            mDecoder.queueInputBuffer(index, 0, size, mExtractor.getSampleTime(), 0);
+            mExtractor.advance();
+            return false;
+        }
+
+        /**
+         * Downscales the given output buffer into the NV21 buffer.
+         *
+         * @return {@code false} if the output is not in a YUV 4:2:0 layout this reader knows
+         */
+        @SuppressWarnings("deprecation")
+        private boolean copyOutput(int index) {
+            final byte[] nv21 = mImageData.array();
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                Image image = mDecoder.getOutputImage(index);
+                if (image == null) {
+                    return false;
+                }
+
+                try {
+                    final Image.Plane[] planes = image.getPlanes();
+                    Nv21Downscaler.downscale(
+                            planes[0].getBuffer(), planes[0].getRowStride(),
+                            planes[0].getPixelStride(),
+                            planes[1].getBuffer(), planes[2].getBuffer(),
+                            planes[1].getRowStride(), planes[1].getPixelStride(),
+                            mWidth, mHeight, mStep, nv21);
+                } finally {
+                    image.close();
+                }
+                return true;
+            }
+
+            if (mOutputFormat == null) {
+                mOutputFormat = mDecoder.getOutputFormat();
+            }
+            final int colorFormat = mOutputFormat.getInteger(MediaFormat.KEY_COLOR_FORMAT);
+            final int stride = getInteger(mOutputFormat, KEY_STRIDE, mWidth);
+            final int sliceHeight = getInteger(mOutputFormat, KEY_SLICE_HEIGHT, mHeight);
+
+            final ByteBuffer buffer = mDecoder.getOutputBuffers()[index];
+            final int chromaOffset = mBufferInfo.offset + stride * sliceHeight;
+            final ByteBuffer luma = slice(buffer, mBufferInfo.offset);
+
+            switch (colorFormat) {
+                case CodecCapabilities.COLOR_FormatYUV420Planar:
+                    Nv21Downscaler.downscale(luma, stride, 1,
+                            slice(buffer, chromaOffset),
+                            slice(buffer, chromaOffset + (stride / 2) * (sliceHeight / 2)),
+                            stride / 2, 1,
+                            mWidth, mHeight, mStep, nv21);
+                    return true;
+                case CodecCapabilities.COLOR_FormatYUV420SemiPlanar:
+                    Nv21Downscaler.downscale(luma, stride, 1,
+                            slice(buffer, chromaOffset), slice(buffer, chromaOffset + 1),
+                            stride, 2,
+                            mWidth, mHeight, mStep, nv21);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private Frame buildFrame(int frameIndex, long timestampMillis) {
+            return new Frame.Builder()
+                    .setImageData(mImageData,
+                            Nv21Downscaler.getScaledSize(mWidth, mStep),
+                            Nv21Downscaler.getScaledSize(mHeight, mStep),
+                            ImageFormat.NV21)
+                    .setId(frameIndex)
+                    .setTimestampMillis(timestampMillis)
+                    .setRotation(mRotation)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies decoded YUV 4:2:0 images into NV21 frames for the detector, keeping every
+ * {@code step}-th pixel of every {@code step}-th row.  The source planes may have any row and
+ * pixel stride, so both {@link android.media.Image} planes and the planar and semi-planar buffer
+ * layouts of older decoders are supported.
+ */
+final class Nv21Downscaler {
+
+    private Nv21Downscaler() {}
+
+    /**
+     * Returns the smallest step that brings the longest side of an image down to at most the
+     * given dimension.
+     */
+    static int getStep(int width, int height, int maxDimension) {
+        final int longestSide = Math.max(width, height);
+        return Math.max(1, (longestSide + maxDimension - 1) / maxDimension);
+    }
+
+    /**
+     * Returns the downscaled size of a side, rounded down to an even number of pixels as NV21
+     * requires.
+     */
+    static int getScaledSize(int size, int step) {
+        return (size / step) & ~1;
+    }
+
+    /**
+     * Writes the downscaled image into {@code nv21}, which must hold at least
+     * {@code scaledWidth * scaledHeight * 3 / 2} bytes.  Buffers are read with absolute
+     * indices, so their positions are left untouched.
+     */
+    static void downscale(ByteBuffer y, int yRowStride, int yPixelStride,
+            ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+            int width, int height, int step, byte[] nv21) {
+        final int scaledWidth = getScaledSize(width, step);
+        final int scaledHeight = getScaledSize(height, step);
+
+        int out = 0;
+        for (int row = 0; row < scaledHeight; ++row) {
+            final int rowStart = row * step * yRowStride;
+            for (int column = 0; column < scaledWidth; ++column) {
+                nv21[out++] = y.get(rowStart + column * step * yPixelStride);
+            }
+        }
+
+        // Output chroma sample (column, row) covers output pixel (2 * column, 2 * row), that is
+        // source pixel (2 * column * step, 2 * row * step) and source chroma sample
+        // (column * step, row * step).
+        for (int row = 0; row < scaledHeight / 2; ++row) {
+            final int rowStart = row * step * uvRowStride;
+            for (int column = 0; column < scaledWidth / 2; ++column) {
+                final int index = rowStart + column * step * uvPixelStride;
+                nv21[out++] = v.get(index);
+                nv21[out++] = u.get(index);
+            }
+        }
+    }
+}
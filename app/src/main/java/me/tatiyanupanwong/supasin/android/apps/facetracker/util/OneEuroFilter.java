@@ -0,0 +1,104 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+/**
+ * One-Euro low-pass filter for a single noisy signal.  The cutoff frequency adapts to the speed
+ * of the signal: slow changes are smoothed heavily to remove jitter, while fast changes raise the
+ * cutoff to keep lag low.
+ * <p>
+ * All state is kept in primitive fields, so filtering a sample does not allocate.  Instances are
+ * not thread-safe and are expected to be fed from the detector thread only.
+ *
+ * @see <a href="http://cristal.univ-lille.fr/~casiez/1euro/">1 Euro Filter</a>
+ */
+public final class OneEuroFilter {
+    /** Sampling period assumed when two samples share a timestamp, matching 30 frames/s. */
+    private static final float DEFAULT_PERIOD_SECONDS = 1.0f / 30.0f;
+
+    private float mMinCutoff;
+    private float mBeta;
+    private float mDerivativeCutoff;
+
+    private boolean mInitialized;
+    private float mValue;
+    private float mDerivative;
+    private long mTimestampMillis;
+
+    /**
+     * @param minCutoff cutoff frequency in Hz applied to a still signal; lower removes more jitter
+     * @param beta how much the cutoff grows with the signal speed; higher reduces lag
+     * @param derivativeCutoff cutoff frequency in Hz used when estimating the signal speed
+     * @throws IllegalArgumentException if a cutoff is not positive or {@code beta} is negative
+     */
+    public OneEuroFilter(float minCutoff, float beta, float derivativeCutoff) {
+        setParameters(minCutoff, beta, derivativeCutoff);
+    }
+
+    /**
+     * Updates the tuning of the filter.  The filtered state is kept.
+     *
+     * @throws IllegalArgumentException if a cutoff is not positive or {@code beta} is negative
+     */
+    public void setParameters(float minCutoff, float beta, float derivativeCutoff) {
+        // Written so that NaN is rejected as well.  A zero cutoff would freeze the filter.
+        if (!(minCutoff > 0.0f)) {
+            throw new IllegalArgumentException("minCutoff must be positive: " + minCutoff);
+        }
+        if (!(beta >= 0.0f)) {
+            throw new IllegalArgumentException("beta must not be negative: " + beta);
+        }
+        if (!(derivativeCutoff > 0.0f)) {
+            throw new IllegalArgumentException(
+                    "derivativeCutoff must be positive: " + derivativeCutoff);
+        }
+
+        mMinCutoff = minCutoff;
+        mBeta = beta;
+        mDerivativeCutoff = derivativeCutoff;
+    }
+
+    /**
+     * Filters a new sample and returns the smoothed value.
+     */
+    public float filter(float value, long timestampMillis) {
+        if (!mInitialized) {
+            mInitialized = true;
+            mValue = value;
+            mDerivative = 0.0f;
+            mTimestampMillis = timestampMillis;
+            return value;
+        }
+
+        float period = (timestampMillis - mTimestampMillis) / 1000.0f;
+        if (period <= 0.0f) {
+            period = DEFAULT_PERIOD_SECONDS;
+        }
+        mTimestampMillis = timestampMillis;
+
+        final float derivative = (value - mValue) / period;
+        mDerivative += alpha(mDerivativeCutoff, period) * (derivative - mDerivative);
+
+        final float cutoff = mMinCutoff + mBeta * Math.abs(mDerivative);
+        mValue += alpha(cutoff, period) * (value - mValue);
+        return mValue;
+    }
+
+    /**
+     * Returns the last smoothed value.
+     */
+    public float getValue() {
+        return mValue;
+    }
+
+    /**
+     * Forgets the filtered state, so that the next sample is passed through unchanged.
+     */
+    public void reset() {
+        mInitialized = false;
+    }
+
+
+    private static float alpha(float cutoff, float period) {
+        final float tau = 1.0f / (2.0f * (float) Math.PI * cutoff);
+        return 1.0f / (1.0f + tau / period);
+    }
+}
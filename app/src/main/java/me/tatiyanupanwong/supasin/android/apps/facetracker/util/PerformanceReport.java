@@ -0,0 +1,83 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Machine-readable performance report, shared by batch processing and the pipeline benchmarks so
+ * that every report uses the same layout and the same keys for the same metrics.
+ * <p>
+ * Reports are written as a JSON object with one key per line, in the order the values were added,
+ * so that two reports of the same kind can be diffed line by line between builds.
+ */
+public final class PerformanceReport {
+    private final Map<String, String> mValues = new LinkedHashMap<>();
+
+    public PerformanceReport add(String key, long value) {
+        mValues.put(key, Long.toString(value));
+        return this;
+    }
+
+    public PerformanceReport add(String key, double value) {
+        mValues.put(key, String.format(Locale.US, "%.3f", value));
+        return this;
+    }
+
+    /**
+     * Adds {@code frames}, {@code workers}, {@code elapsedNanos}, {@code framesPerSecond} and
+     * {@code framesPerSecondPerCore}.
+     */
+    public PerformanceReport addThroughput(int frames, int workers, long elapsedNanos) {
+        final double framesPerSecond = elapsedNanos == 0 ? 0.0 : frames * 1e9 / elapsedNanos;
+        return add("frames", frames)
+                .add("workers", workers)
+                .add("elapsedNanos", elapsedNanos)
+                .add("framesPerSecond", framesPerSecond)
+                .add("framesPerSecondPerCore", framesPerSecond / workers);
+    }
+
+    /**
+     * Adds the per-frame latency as {@code meanLatencyNanos}, {@code p50LatencyNanos},
+     * {@code p95LatencyNanos}, {@code p99LatencyNanos} and {@code maxLatencyNanos}.
+     */
+    public PerformanceReport addLatency(long meanNanos, long p50Nanos, long p95Nanos,
+            long p99Nanos, long maxNanos) {
+        return add("meanLatencyNanos", meanNanos)
+                .add("p50LatencyNanos", p50Nanos)
+                .add("p95LatencyNanos", p95Nanos)
+                .add("p99LatencyNanos", p99Nanos)
+                .add("maxLatencyNanos", maxNanos);
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        int remaining = mValues.size();
+        for (Map.Entry<String, String> entry : mValues.entrySet()) {
+            json.append("  \"").append(entry.getKey()).append("\": ").append(entry.getValue());
+            json.append(--remaining == 0 ? "\n" : ",\n");
+        }
+        return json.append("}\n").toString();
+    }
+
+    /**
+     * Writes the report to the given file, creating its parent directories as needed.
+     */
+    public void writeTo(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                Charset.forName("UTF-8"))) {
+            writer.write(toJson());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import com.google.android.gms.vision.Detector.Detections;
+import com.google.android.gms.vision.Tracker;
+import com.google.android.gms.vision.face.Face;
+
+/**
+ * Face tracker that runs the classification probabilities of its face through its own
+ * {@link FaceClassificationFilter} before every update.  With one tracker per face, as created
+ * by a {@code MultiProcessor}, every face is therefore smoothed independently.
+ * <p>
+ * Subclasses receive the filtered values along with the raw face in
+ * {@link #onUpdate(Detections, Face, FaceClassificationFilter)}, and may tune the filter through
+ * {@link #getClassificationFilter()}.
+ */
+public abstract class SmoothingFaceTracker extends Tracker<Face> {
+    private final FaceClassificationFilter mFilter = new FaceClassificationFilter();
+
+    /**
+     * Resets the filter for the new face, then calls {@link #onNewFace(int, Face)}.
+     */
+    @Override
+    public final void onNewItem(int faceId, Face face) {
+        mFilter.reset();
+        onNewFace(faceId, face);
+    }
+
+    /**
+     * Feeds the face to the filter, then calls
+     * {@link #onUpdate(Detections, Face, FaceClassificationFilter)}.
+     */
+    @Override
+    public final void onUpdate(Detections<Face> detectionResults, Face face) {
+        mFilter.update(face, detectionResults.getFrameMetadata().getTimestampMillis());
+        onUpdate(detectionResults, face, mFilter);
+    }
+
+    /**
+     * Called when the tracker starts following a new face.
+     */
+    protected void onNewFace(int faceId, Face face) {}
+
+    /**
+     * Called with the raw face detected in the most recent frame and the filter holding its
+     * smoothed classification probabilities.
+     */
+    protected abstract void onUpdate(Detections<Face> detectionResults, Face face,
+            FaceClassificationFilter filter);
+
+    public FaceClassificationFilter getClassificationFilter() {
+        return mFilter;
+    }
+}
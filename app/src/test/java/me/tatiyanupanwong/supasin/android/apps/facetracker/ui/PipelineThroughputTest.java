@@ -0,0 +1,153 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.view.View;
+
+import com.google.android.gms.vision.CameraSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay.FaceGraphicPool;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay.GraphicOverlay;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.util.CameraSourceHelper;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.util.PerformanceReport;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.util.SyntheticFaceDetector;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.util.SyntheticFrameSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Headless end-to-end run of the live pipeline: synthetic frames go through a fake detector, the
+ * processor the camera attaches to its detector, {@link CameraSourceHelper#createFaceProcessor},
+ * a {@link GraphicFaceTracker} and {@link GraphicOverlay#draw(Canvas)} into an off-screen bitmap.
+ * Every frame is timed from detection to the end of drawing.
+ * <p>
+ * The results are written as a {@link PerformanceReport} to
+ * {@code build/reports/pipeline/pipeline-throughput.json}.  The budgets can be tightened or
+ * relaxed for a given build host with {@code -Dpipeline.minFramesPerSecond},
+ * {@code -Dpipeline.maxP95LatencyNanos} and {@code -Dpipeline.maxP99LatencyNanos} on the Gradle
+ * command line, which {@code app/build.gradle} forwards to the test JVM.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PipelineThroughputTest {
+    private static final int FACE_COUNT = 3;
+    private static final int WARMUP_FRAMES = 300;
+    private static final int MEASURED_FRAMES = 3000;
+
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    private static final long MIN_FRAMES_PER_SECOND =
+            Long.getLong("pipeline.minFramesPerSecond", 100);
+    private static final long MAX_P95_LATENCY_NANOS =
+            Long.getLong("pipeline.maxP95LatencyNanos", 10000000L);
+    private static final long MAX_P99_LATENCY_NANOS =
+            Long.getLong("pipeline.maxP99LatencyNanos", 25000000L);
+
+    private static final File REPORT_FILE =
+            new File("build/reports/pipeline/pipeline-throughput.json");
+
+    @Test
+    public void syntheticPipelineMeetsBudgets() throws IOException {
+        final GraphicOverlay overlay = new GraphicOverlay(RuntimeEnvironment.application, null);
+        overlay.measure(View.MeasureSpec.makeMeasureSpec(VIEW_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(VIEW_HEIGHT, View.MeasureSpec.EXACTLY));
+        overlay.layout(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+
+        // Portrait preview from the front camera, as set up by CameraSourcePreview.
+        SyntheticFrameSource frameSource = new SyntheticFrameSource(480, 640);
+        overlay.setCameraInfo(frameSource.getWidth(), frameSource.getHeight(),
+                CameraSource.CAMERA_FACING_FRONT);
+
+        FaceGraphicPool graphicPool = new FaceGraphicPool(overlay, 1);
+        graphicPool.setLandmarksEnabled(true);
+
+        SyntheticFaceDetector detector = new SyntheticFaceDetector(FACE_COUNT);
+        detector.setProcessor(CameraSourceHelper.createFaceProcessor(detector,
+                new GraphicFaceTracker(overlay, graphicPool)));
+
+        CountingCanvas canvas = new CountingCanvas(
+                Bitmap.createBitmap(VIEW_WIDTH, VIEW_HEIGHT, Bitmap.Config.ARGB_8888));
+
+        for (int i = 0; i < WARMUP_FRAMES; ++i) {
+            detector.receiveFrame(frameSource.frame(i));
+            overlay.draw(canvas);
+        }
+        canvas.mFaceBoxes = 0;
+
+        final long[] latencies = new long[MEASURED_FRAMES];
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_FRAMES; ++i) {
+            final long frameStartNanos = System.nanoTime();
+            detector.receiveFrame(frameSource.frame(WARMUP_FRAMES + i));
+            overlay.draw(canvas);
+            latencies[i] = System.nanoTime() - frameStartNanos;
+        }
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        detector.release();
+
+        Arrays.sort(latencies);
+        final long meanNanos = mean(latencies);
+        final long p95Nanos = percentile(latencies, 95);
+        final long p99Nanos = percentile(latencies, 99);
+
+        PerformanceReport report = new PerformanceReport()
+                .add("faces", FACE_COUNT)
+                .addThroughput(MEASURED_FRAMES, 1, elapsedNanos)
+                .addLatency(meanNanos, percentile(latencies, 50), p95Nanos, p99Nanos,
+                        latencies[latencies.length - 1])
+                .add("budgetMinFramesPerSecond", MIN_FRAMES_PER_SECOND)
+                .add("budgetMaxP95LatencyNanos", MAX_P95_LATENCY_NANOS)
+                .add("budgetMaxP99LatencyNanos", MAX_P99_LATENCY_NANOS);
+        report.writeTo(REPORT_FILE);
+
+        // The camera only tracks the largest face, so exactly one of the faces is drawn per frame.
+        assertEquals(MEASURED_FRAMES, canvas.mFaceBoxes);
+
+        final double framesPerSecond = MEASURED_FRAMES * 1e9 / elapsedNanos;
+        assertTrue(report.toJson(), framesPerSecond >= MIN_FRAMES_PER_SECOND);
+        assertTrue(report.toJson(), p95Nanos <= MAX_P95_LATENCY_NANOS);
+        assertTrue(report.toJson(), p99Nanos <= MAX_P99_LATENCY_NANOS);
+    }
+
+
+    private static long mean(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        final int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * Off-screen canvas counting the bounding boxes drawn by the face graphics.
+     */
+    private static final class CountingCanvas extends Canvas {
+        int mFaceBoxes;
+
+        CountingCanvas(Bitmap bitmap) {
+            super(bitmap);
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+            mFaceBoxes++;
+            super.drawRect(left, top, right, bottom, paint);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PointF;
+
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+import java.util.Locale;
+
+import me.tatiyanupanwong.supasin.android.apps.facetracker.util.SyntheticFaceDetector;
+import me.tatiyanupanwong.supasin.android.apps.facetracker.util.SyntheticFrameSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the batched landmark rendering of {@link FaceGraphic} against drawing one point per
+ * draw call, on a canvas that only counts calls.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FaceGraphicDrawBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 200000;
+
+    private final Paint mPaint = new Paint();
+    private final CountingCanvas mCanvas = new CountingCanvas();
+
+    private FaceGraphic mGraphic;
+    private Face mFace;
+
+    @Before
+    public void setUp() {
+        mGraphic = new FaceGraphic(new GraphicOverlay(RuntimeEnvironment.application, null));
+        mFace = new SyntheticFaceDetector(1).detect(new SyntheticFrameSource(640, 480).frame(0))
+                .valueAt(0);
+    }
+
+    @Test
+    public void drawsEachFaceWithOnePointsAndOneLinesCall() {
+        mGraphic.drawLandmarks(mCanvas, mFace, mPaint);
+        mGraphic.drawAxes(mCanvas, mFace, mPaint);
+
+        assertEquals(2, mCanvas.mCalls);
+        assertEquals(12, mCanvas.mPoints);
+        assertEquals(2, mCanvas.mLines);
+    }
+
+    @Test
+    public void batchedDrawingBenchmark() {
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            drawBatched();
+            drawPerPoint();
+        }
+
+        mCanvas.reset();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            drawBatched();
+        }
+        final long batchedNanos = System.nanoTime() - startNanos;
+        final int batchedCalls = mCanvas.mCalls;
+
+        mCanvas.reset();
+        startNanos = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            drawPerPoint();
+        }
+        final long perPointNanos = System.nanoTime() - startNanos;
+        final int perPointCalls = mCanvas.mCalls;
+
+        System.out.println(String.format(Locale.US,
+                "Landmarks, batched: %d ns/face, %d calls/face; per point: %d ns/face,"
+                        + " %d calls/face",
+                batchedNanos / ITERATIONS, batchedCalls / ITERATIONS,
+                perPointNanos / ITERATIONS, perPointCalls / ITERATIONS));
+
+        assertEquals(ITERATIONS, batchedCalls);
+        assertEquals(ITERATIONS * 12, perPointCalls);
+        assertTrue(batchedCalls < perPointCalls);
+    }
+
+
+    private void drawBatched() {
+        mGraphic.drawLandmarks(mCanvas, mFace, mPaint);
+    }
+
+    private void drawPerPoint() {
+        final List<Landmark> landmarks = mFace.getLandmarks();
+        for (int i = 0; i < landmarks.size(); ++i) {
+            final PointF position = landmarks.get(i).getPosition();
+            mCanvas.drawPoint(mGraphic.translateX(position.x), mGraphic.translateY(position.y),
+                    mPaint);
+        }
+    }
+
+
+    /**
+     * Canvas that counts draw calls and the primitives they carry, without rasterizing.
+     */
+    private static final class CountingCanvas extends Canvas {
+        int mCalls;
+        int mPoints;
+        int mLines;
+
+        void reset() {
+            mCalls = 0;
+            mPoints = 0;
+            mLines = 0;
+        }
+
+        @Override
+        public void drawPoint(float x, float y, Paint paint) {
+            mCalls++;
+            mPoints++;
+        }
+
+        @Override
+        public void drawPoints(float[] pts, int offset, int count, Paint paint) {
+            mCalls++;
+            mPoints += count / 2;
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+            mCalls++;
+            mLines++;
+        }
+
+        @Override
+        public void drawLines(float[] pts, Paint paint) {
+            mCalls++;
+            mLines += pts.length / 4;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.ui.overlay;
+
+import android.util.SparseIntArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class FaceGraphicPoolTest {
+    private static final int CAPACITY = 4;
+    private static final int THREAD_COUNT = 8;
+    private static final int COLOR_COUNT = 7;
+
+    private FaceGraphicPool mPool;
+
+    @Before
+    public void setUp() {
+        mPool = new FaceGraphicPool(new GraphicOverlay(RuntimeEnvironment.application, null),
+                CAPACITY);
+    }
+
+    @Test
+    public void concurrentUseNeverHandsOutTheSameGraphicTwice() throws InterruptedException {
+        final Set<FaceGraphic> inUse = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        final AtomicInteger conflicts = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < 20000; ++i) {
+                FaceGraphic graphic = mPool.acquire();
+                if (!inUse.add(graphic)) {
+                    conflicts.incrementAndGet();
+                }
+                inUse.remove(graphic);
+                mPool.release(graphic);
+            }
+        });
+
+        assertEquals(0, conflicts.get());
+    }
+
+    @Test
+    public void colorsRotateEvenlyAcrossThreads() throws InterruptedException {
+        final int perThread = COLOR_COUNT * 100;
+        final List<FaceGraphic> acquired = Collections.synchronizedList(new ArrayList<>());
+
+        runConcurrently(() -> {
+            for (int i = 0; i < perThread; ++i) {
+                acquired.add(mPool.acquire());
+            }
+        });
+
+        SparseIntArray colorCounts = new SparseIntArray();
+        for (FaceGraphic graphic : acquired) {
+            colorCounts.put(graphic.getColor(), colorCounts.get(graphic.getColor()) + 1);
+        }
+
+        // A racy index would skip or repeat colors, leaving the counts uneven.
+        assertEquals(COLOR_COUNT, colorCounts.size());
+        for (int i = 0; i < colorCounts.size(); ++i) {
+            assertEquals(THREAD_COUNT * perThread / COLOR_COUNT, colorCounts.valueAt(i));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releasingTwiceIsRejected() {
+        FaceGraphic graphic = mPool.acquire();
+        mPool.release(graphic);
+        mPool.release(graphic);
+    }
+
+    @Test
+    public void rejectedDoubleReleaseLeavesThePoolIntact() {
+        FaceGraphic graphic = mPool.acquire();
+        mPool.release(graphic);
+        try {
+            mPool.release(graphic);
+        } catch (IllegalStateException expected) {
+            // Checked below.
+        }
+
+        final Set<FaceGraphic> acquired = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        for (int i = 0; i < CAPACITY + 1; ++i) {
+            assertTrue(acquired.add(mPool.acquire()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void releasingAStandaloneGraphicIsRejected() {
+        mPool.release(new FaceGraphic(new GraphicOverlay(RuntimeEnvironment.application, null)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void releasingIntoAnotherPoolIsRejected() {
+        FaceGraphicPool otherPool = new FaceGraphicPool(
+                new GraphicOverlay(RuntimeEnvironment.application, null), CAPACITY);
+        otherPool.release(mPool.acquire());
+    }
+
+    @Test
+    public void acquireAndReleaseDoNotAllocate() {
+        final int iterations = 100000;
+        for (int i = 0; i < iterations; ++i) {
+            mPool.release(mPool.acquire());
+        }
+
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        final long startBytes = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; ++i) {
+            mPool.release(mPool.acquire());
+        }
+        final long allocatedBytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+        System.out.println(String.format(Locale.US, "Pool acquire/release: %.3f bytes/cycle",
+                (double) allocatedBytes / iterations));
+
+        // Leaves room for the bookkeeping of the measurement itself, but not for one object
+        // per cycle.
+        assertTrue("Allocated " + allocatedBytes + " bytes", allocatedBytes < iterations);
+    }
+
+
+    private static void runConcurrently(Runnable task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; ++i) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.run();
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
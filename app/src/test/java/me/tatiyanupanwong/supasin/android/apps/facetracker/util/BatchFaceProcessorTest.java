@@ -0,0 +1,270 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import com.google.android.gms.vision.Detector.Detections;
+import com.google.android.gms.vision.Tracker;
+import com.google.android.gms.vision.face.Face;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatchFaceProcessorTest {
+    private static final int CLIP_COUNT = 8;
+    private static final int FRAMES_PER_CLIP = 90;
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    private final SyntheticFrameSource mFrameSource = new SyntheticFrameSource(640, 480);
+
+    @Test
+    public void processesSyntheticClipsInParallel() throws InterruptedException, IOException {
+        List<File> files = clips(CLIP_COUNT);
+        files.add(new File("notes.txt"));
+
+        final AtomicInteger trackerUpdates = new AtomicInteger();
+        RecordingListener listener = new RecordingListener();
+        BatchFaceProcessor processor = new BatchFaceProcessor(
+                () -> new SyntheticFaceDetector(2),
+                new SyntheticClipReader(Math.min(2, CORES)),
+                file -> new Tracker<Face>() {
+                    @Override
+                    public void onUpdate(Detections<Face> detections, Face face) {
+                        trackerUpdates.incrementAndGet();
+                    }
+                },
+                listener);
+
+        processor.start(files);
+        BatchFaceProcessor.Stats stats = listener.await();
+
+        assertEquals(CLIP_COUNT, stats.getFileCount());
+        assertEquals(0, stats.getFailedFileCount());
+        assertEquals(CLIP_COUNT * FRAMES_PER_CLIP, stats.getFrameCount());
+        assertEquals(CLIP_COUNT * FRAMES_PER_CLIP, trackerUpdates.get());
+        assertEquals(0, listener.mIncompleteDetections.get());
+        assertEquals(CLIP_COUNT, listener.mStreamedFrames.size());
+        for (AtomicInteger frames : listener.mStreamedFrames.values()) {
+            assertEquals(FRAMES_PER_CLIP, frames.get());
+        }
+        assertTrue(stats.getFramesPerSecondPerCore() > 0.0f);
+        stats.toReport().writeTo(new File("build/reports/pipeline/batch-throughput.json"));
+
+        // The reader holds the first clips until two workers are reading at once.
+        if (CORES > 1) {
+            assertTrue(listener.mWorkerThreads.toString(), listener.mWorkerThreads.size() > 1);
+        }
+    }
+
+    @Test
+    public void memoryBudgetCapsWorkerCount() throws InterruptedException {
+        SyntheticClipReader reader = new SyntheticClipReader(1);
+        RecordingListener listener = new RecordingListener();
+        BatchFaceProcessor processor = new BatchFaceProcessor(
+                () -> new SyntheticFaceDetector(1), reader, file -> new Tracker<Face>() {},
+                listener);
+
+        processor.setMemoryBudget(2 * reader.getMaxMemoryBytes());
+        processor.start(clips(CLIP_COUNT));
+        BatchFaceProcessor.Stats stats = listener.await();
+
+        assertEquals(Math.min(2, CORES), stats.getWorkerCount());
+        assertTrue(listener.mWorkerThreads.size() <= 2);
+        assertEquals(CLIP_COUNT, stats.getFileCount());
+    }
+
+    @Test
+    public void failingFilesAreReportedAndSkipped() throws InterruptedException {
+        List<File> files = clips(CLIP_COUNT);
+        files.add(new File("broken-0"));
+
+        RecordingListener listener = new RecordingListener();
+        BatchFaceProcessor processor = new BatchFaceProcessor(
+                () -> new SyntheticFaceDetector(1), new SyntheticClipReader(1),
+                file -> new Tracker<Face>() {}, listener);
+
+        processor.start(files);
+        BatchFaceProcessor.Stats stats = listener.await();
+
+        assertEquals(CLIP_COUNT, stats.getFileCount());
+        assertEquals(1, stats.getFailedFileCount());
+        assertEquals(CLIP_COUNT * FRAMES_PER_CLIP, stats.getFrameCount());
+    }
+
+    @Test
+    public void detectorFailureCompletesWithEveryFileFailed() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        BatchFaceProcessor processor = new BatchFaceProcessor(
+                () -> {
+                    throw new IllegalStateException("Synthetic detector failure");
+                },
+                new SyntheticClipReader(1), file -> new Tracker<Face>() {}, listener);
+
+        processor.start(clips(CLIP_COUNT));
+        BatchFaceProcessor.Stats stats = listener.await();
+
+        assertEquals(0, stats.getFileCount());
+        assertEquals(CLIP_COUNT, stats.getFailedFileCount());
+        assertEquals(0, stats.getFrameCount());
+    }
+
+    @Test
+    public void canRestartFromOnComplete() throws InterruptedException {
+        final List<File> files = clips(2);
+        final CountDownLatch completed = new CountDownLatch(2);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final BatchFaceProcessor[] processor = new BatchFaceProcessor[1];
+
+        processor[0] = new BatchFaceProcessor(
+                () -> new SyntheticFaceDetector(1), new SyntheticClipReader(1),
+                file -> new Tracker<Face>() {},
+                new BatchFaceProcessor.Listener() {
+                    @Override
+                    public void onFrameProcessed(File file, Detections<Face> detections) {}
+
+                    @Override
+                    public void onComplete(BatchFaceProcessor.Stats stats) {
+                        completed.countDown();
+                        if (completed.getCount() == 1) {
+                            try {
+                                processor[0].start(files);
+                            } catch (RuntimeException e) {
+                                error.set(e);
+                                completed.countDown();
+                            }
+                        }
+                    }
+                });
+
+        processor[0].start(files);
+        assertTrue(completed.await(30, TimeUnit.SECONDS));
+        assertEquals(null, error.get());
+    }
+
+    @Test
+    public void cancelStopsRemainingFrames() throws InterruptedException {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<BatchFaceProcessor.Stats> result = new AtomicReference<>();
+        final BatchFaceProcessor[] processor = new BatchFaceProcessor[1];
+
+        processor[0] = new BatchFaceProcessor(
+                () -> new SyntheticFaceDetector(1),
+                new SyntheticClipReader(1),
+                file -> new Tracker<Face>() {},
+                new BatchFaceProcessor.Listener() {
+                    @Override
+                    public void onFrameProcessed(File file, Detections<Face> detections) {
+                        processor[0].cancel();
+                    }
+
+                    @Override
+                    public void onComplete(BatchFaceProcessor.Stats stats) {
+                        result.set(stats);
+                        completed.countDown();
+                    }
+                });
+
+        processor[0].start(clips(1));
+        assertTrue(completed.await(30, TimeUnit.SECONDS));
+
+        assertEquals(1, result.get().getFrameCount());
+    }
+
+
+    private static List<File> clips(int count) {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            files.add(new File("clip-" + i));
+        }
+        return files;
+    }
+
+    /**
+     * Reads "clip-N" files as {@link #FRAMES_PER_CLIP} synthetic frames, fails on "broken-N"
+     * files and rejects anything else.
+     */
+    private final class SyntheticClipReader implements BatchFaceProcessor.FrameReader {
+        private final CountDownLatch mConcurrentReads;
+
+        /**
+         * @param concurrentReads number of reads that must be in progress at once before any of
+         *        them proceeds, so that a single worker cannot take every clip
+         */
+        SyntheticClipReader(int concurrentReads) {
+            mConcurrentReads = new CountDownLatch(concurrentReads);
+        }
+
+        @Override
+        public boolean read(File file, BatchFaceProcessor.FrameConsumer consumer) {
+            if (file.getName().startsWith("broken-")) {
+                throw new OutOfMemoryError("Synthetic decoding failure");
+            }
+            if (!file.getName().startsWith("clip-")) {
+                return false;
+            }
+
+            mConcurrentReads.countDown();
+            try {
+                mConcurrentReads.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            for (int i = 0; i < FRAMES_PER_CLIP; ++i) {
+                if (!consumer.onFrame(mFrameSource.frame(i))) {
+                    break;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public long getMaxMemoryBytes() {
+            return mFrameSource.getWidth() * mFrameSource.getHeight() * 3 / 2;
+        }
+    }
+
+    private static final class RecordingListener implements BatchFaceProcessor.Listener {
+        final Map<File, AtomicInteger> mStreamedFrames = new ConcurrentHashMap<>();
+        final Set<String> mWorkerThreads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger mIncompleteDetections = new AtomicInteger();
+
+        private final AtomicReference<BatchFaceProcessor.Stats> mStats = new AtomicReference<>();
+        private final CountDownLatch mCompleted = new CountDownLatch(1);
+
+        @Override
+        public void onFrameProcessed(File file, Detections<Face> detections) {
+            if (detections.getDetectedItems().size() != 2) {
+                mIncompleteDetections.incrementAndGet();
+            }
+            mStreamedFrames.computeIfAbsent(file, key -> new AtomicInteger()).incrementAndGet();
+            mWorkerThreads.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void onComplete(BatchFaceProcessor.Stats stats) {
+            mStats.set(stats);
+            mCompleted.countDown();
+        }
+
+        BatchFaceProcessor.Stats await() throws InterruptedException {
+            assertTrue(mCompleted.await(30, TimeUnit.SECONDS));
+            return mStats.get();
+        }
+    }
+}
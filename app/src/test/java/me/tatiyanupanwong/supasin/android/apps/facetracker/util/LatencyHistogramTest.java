@@ -0,0 +1,58 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(95));
+    }
+
+    @Test
+    public void percentilesAreAccurateToOneBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; ++i) {
+            histogram.record(i * MILLIS);
+        }
+
+        assertEquals(50500000L, histogram.getMeanNanos());
+        assertEquals(100 * MILLIS, histogram.getMaxNanos());
+        assertEquals(50 * MILLIS, histogram.getPercentileNanos(50), 100000L);
+        assertEquals(95 * MILLIS, histogram.getPercentileNanos(95), 100000L);
+        assertEquals(99 * MILLIS, histogram.getPercentileNanos(99), 100000L);
+    }
+
+    @Test
+    public void samplesBeyondLastBucketOnlyRaiseTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(MILLIS);
+        histogram.record(5000 * MILLIS);
+
+        assertEquals(5000 * MILLIS, histogram.getMaxNanos());
+        assertEquals(5000 * MILLIS, histogram.getPercentileNanos(99));
+    }
+
+    @Test
+    public void addMergesWorkerHistograms() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(2 * MILLIS);
+        second.record(4 * MILLIS);
+
+        first.add(second);
+
+        assertEquals(3 * MILLIS, first.getMeanNanos());
+        assertEquals(4 * MILLIS, first.getMaxNanos());
+
+        first.clear();
+        assertEquals(0, first.getMaxNanos());
+    }
+}
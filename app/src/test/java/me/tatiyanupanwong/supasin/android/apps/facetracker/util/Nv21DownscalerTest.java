@@ -0,0 +1,63 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class Nv21DownscalerTest {
+
+    @Test
+    public void stepFitsLongestSide() {
+        assertEquals(1, Nv21Downscaler.getStep(640, 480, 640));
+        assertEquals(2, Nv21Downscaler.getStep(1280, 720, 640));
+        assertEquals(3, Nv21Downscaler.getStep(1920, 1080, 640));
+        assertEquals(6, Nv21Downscaler.getStep(2160, 3840, 640));
+        assertEquals(1, Nv21Downscaler.getStep(0, 0, 640));
+
+        assertEquals(640, Nv21Downscaler.getScaledSize(1920, 3));
+        assertEquals(360, Nv21Downscaler.getScaledSize(1080, 3));
+        assertEquals(332, Nv21Downscaler.getScaledSize(1000, 3));
+    }
+
+    @Test
+    public void planarImageIsInterleavedAsVu() {
+        // 4x2 image: Y = 0..7, U = 10, 11, V = 20, 21.
+        ByteBuffer y = ByteBuffer.wrap(new byte[] { 0, 1, 2, 3, 4, 5, 6, 7 });
+        ByteBuffer u = ByteBuffer.wrap(new byte[] { 10, 11 });
+        ByteBuffer v = ByteBuffer.wrap(new byte[] { 20, 21 });
+        byte[] nv21 = new byte[12];
+
+        Nv21Downscaler.downscale(y, 4, 1, u, v, 2, 1, 4, 2, 1, nv21);
+
+        assertArrayEquals(new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 20, 10, 21, 11 }, nv21);
+    }
+
+    @Test
+    public void semiPlanarImageWithRowPaddingIsSubsampled() {
+        // 4x4 image with a row stride of 6, halved to 2x2.
+        byte[] luma = new byte[6 * 4];
+        for (int row = 0; row < 4; ++row) {
+            for (int column = 0; column < 4; ++column) {
+                luma[row * 6 + column] = (byte) (row * 4 + column);
+            }
+        }
+        // NV12 chroma, 2x2 samples: U = 30 + index, V = 40 + index.
+        byte[] chroma = new byte[6 * 2];
+        for (int row = 0; row < 2; ++row) {
+            for (int column = 0; column < 2; ++column) {
+                chroma[row * 6 + column * 2] = (byte) (30 + row * 2 + column);
+                chroma[row * 6 + column * 2 + 1] = (byte) (40 + row * 2 + column);
+            }
+        }
+        ByteBuffer u = ByteBuffer.wrap(chroma);
+        ByteBuffer v = ByteBuffer.wrap(chroma, 1, chroma.length - 1).slice();
+        byte[] nv21 = new byte[6];
+
+        Nv21Downscaler.downscale(ByteBuffer.wrap(luma), 6, 1, u, v, 6, 2, 4, 4, 2, nv21);
+
+        assertArrayEquals(new byte[] { 0, 2, 8, 10, 40, 30 }, nv21);
+    }
+}
@@ -0,0 +1,153 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OneEuroFilterTest {
+    private static final long FRAME_INTERVAL_MILLIS = 33;
+    private static final float NOISE = 0.1f;
+
+    @Test
+    public void passesFirstSampleThrough() {
+        OneEuroFilter filter = new OneEuroFilter(1.0f, 0.1f, 1.0f);
+
+        assertEquals(0.7f, filter.filter(0.7f, 0), 0.0f);
+        assertEquals(0.7f, filter.getValue(), 0.0f);
+    }
+
+    @Test
+    public void reducesJitterOnSteadySignal() {
+        OneEuroFilter filter = new OneEuroFilter(1.0f, 0.1f, 1.0f);
+        Random random = new Random(42);
+
+        double rawError = 0;
+        double filteredError = 0;
+        for (int i = 0; i < 600; ++i) {
+            final float raw = 0.5f + (float) random.nextGaussian() * NOISE;
+            final float filtered = filter.filter(raw, i * FRAME_INTERVAL_MILLIS);
+            if (i >= 30) {
+                rawError += Math.abs(raw - 0.5f);
+                filteredError += Math.abs(filtered - 0.5f);
+            }
+        }
+
+        assertTrue("raw " + rawError + ", filtered " + filteredError,
+                filteredError < rawError / 2);
+    }
+
+    @Test
+    public void followsStepWithinHalfASecond() {
+        OneEuroFilter filter = new OneEuroFilter(1.0f, 0.1f, 1.0f);
+        Random random = new Random(7);
+
+        long timestamp = 0;
+        for (int i = 0; i < 60; ++i, timestamp += FRAME_INTERVAL_MILLIS) {
+            filter.filter(0.1f + (float) random.nextGaussian() * NOISE / 2, timestamp);
+        }
+
+        float filtered = 0;
+        for (int i = 0; i < 15; ++i, timestamp += FRAME_INTERVAL_MILLIS) {
+            filtered = filter.filter(0.9f + (float) random.nextGaussian() * NOISE / 2, timestamp);
+        }
+
+        assertTrue("filtered " + filtered, filtered > 0.8f);
+    }
+
+    @Test
+    public void higherMinCutoffTracksFaster() {
+        OneEuroFilter smooth = new OneEuroFilter(0.5f, 0.0f, 1.0f);
+        OneEuroFilter responsive = new OneEuroFilter(5.0f, 0.0f, 1.0f);
+
+        smooth.filter(0.0f, 0);
+        responsive.filter(0.0f, 0);
+        final float smoothValue = smooth.filter(1.0f, FRAME_INTERVAL_MILLIS);
+        final float responsiveValue = responsive.filter(1.0f, FRAME_INTERVAL_MILLIS);
+
+        assertTrue(responsiveValue > smoothValue);
+    }
+
+    @Test
+    public void handlesRepeatedTimestamps() {
+        OneEuroFilter filter = new OneEuroFilter(1.0f, 0.1f, 1.0f);
+
+        filter.filter(0.2f, 100);
+        final float filtered = filter.filter(0.8f, 100);
+
+        assertFalse(Float.isNaN(filtered));
+        assertTrue(filtered > 0.2f && filtered < 0.8f);
+    }
+
+    @Test
+    public void resetRestartsFromNextSample() {
+        OneEuroFilter filter = new OneEuroFilter(1.0f, 0.1f, 1.0f);
+        filter.filter(0.2f, 0);
+        filter.filter(0.3f, FRAME_INTERVAL_MILLIS);
+
+        filter.reset();
+
+        assertEquals(0.9f, filter.filter(0.9f, 2 * FRAME_INTERVAL_MILLIS), 0.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroMinCutoff() {
+        new OneEuroFilter(0.0f, 0.1f, 1.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeBeta() {
+        new OneEuroFilter(1.0f, -0.1f, 1.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveDerivativeCutoffAtRuntime() {
+        new OneEuroFilter(1.0f, 0.1f, 1.0f).setParameters(1.0f, 0.1f, -1.0f);
+    }
+
+    @Test
+    public void rejectedParametersKeepPreviousTuning() {
+        OneEuroFilter filter = new OneEuroFilter(1.0f, 0.1f, 1.0f);
+        filter.filter(0.0f, 0);
+        try {
+            filter.setParameters(Float.NaN, 0.1f, 1.0f);
+        } catch (IllegalArgumentException expected) {
+            // The filter must still move towards new samples.
+        }
+
+        assertTrue(filter.filter(1.0f, 33) > 0.0f);
+    }
+
+    @Test
+    public void costPerSampleBenchmark() {
+        final int samples = 10000000;
+        final float[] signal = new float[1024];
+        Random random = new Random(1);
+        for (int i = 0; i < signal.length; ++i) {
+            signal[i] = 0.5f + (float) random.nextGaussian() * NOISE;
+        }
+
+        OneEuroFilter filter = new OneEuroFilter(1.0f, 0.1f, 1.0f);
+        float sink = 0;
+        for (int i = 0; i < samples; ++i) {
+            sink += filter.filter(signal[i & 1023], i * FRAME_INTERVAL_MILLIS);
+        }
+
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < samples; ++i) {
+            sink += filter.filter(signal[i & 1023], i * FRAME_INTERVAL_MILLIS);
+        }
+        final double nanosPerSample = (double) (System.nanoTime() - startNanos) / samples;
+
+        System.out.println(String.format(Locale.US, "OneEuroFilter: %.1f ns/sample (%f)",
+                nanosPerSample, sink));
+
+        // Nanosecond-scale on any host. The generous bound only catches gross regressions, such
+        // as allocating per sample.
+        assertTrue(nanosPerSample + " ns/sample", nanosPerSample < 500);
+    }
+}
@@ -0,0 +1,50 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class PerformanceReportTest {
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writesOneKeyPerLineInInsertionOrder() {
+        PerformanceReport report = new PerformanceReport()
+                .add("faces", 3)
+                .addThroughput(300, 2, 1000000000L)
+                .addLatency(4, 5, 6, 7, 8);
+
+        assertEquals("{\n"
+                + "  \"faces\": 3,\n"
+                + "  \"frames\": 300,\n"
+                + "  \"workers\": 2,\n"
+                + "  \"elapsedNanos\": 1000000000,\n"
+                + "  \"framesPerSecond\": 300.000,\n"
+                + "  \"framesPerSecondPerCore\": 150.000,\n"
+                + "  \"meanLatencyNanos\": 4,\n"
+                + "  \"p50LatencyNanos\": 5,\n"
+                + "  \"p95LatencyNanos\": 6,\n"
+                + "  \"p99LatencyNanos\": 7,\n"
+                + "  \"maxLatencyNanos\": 8\n"
+                + "}\n", report.toJson());
+    }
+
+    @Test
+    public void writeToCreatesParentDirectories() throws IOException {
+        File file = new File(mTemporaryFolder.getRoot(), "reports/pipeline/report.json");
+        PerformanceReport report = new PerformanceReport().addThroughput(0, 1, 0);
+
+        report.writeTo(file);
+
+        assertEquals(report.toJson(),
+                new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8")));
+    }
+}
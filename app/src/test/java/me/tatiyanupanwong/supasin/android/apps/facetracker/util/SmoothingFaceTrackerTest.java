@@ -0,0 +1,77 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector.Detections;
+import com.google.android.gms.vision.MultiProcessor;
+import com.google.android.gms.vision.face.Face;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SmoothingFaceTrackerTest {
+    private static final int FACE_COUNT = 2;
+    private static final int FRAME_COUNT = 300;
+
+    @Test
+    public void smoothsEveryFaceIndependently() {
+        final SparseArray<RecordingTracker> trackers = new SparseArray<>();
+        SyntheticFaceDetector detector = new SyntheticFaceDetector(FACE_COUNT);
+        detector.setProcessor(new MultiProcessor.Builder<>((Face face) -> {
+            RecordingTracker tracker = new RecordingTracker();
+            trackers.put(face.getId(), tracker);
+            return tracker;
+        }).build());
+
+        SyntheticFrameSource frameSource = new SyntheticFrameSource(640, 480);
+        for (int i = 0; i < FRAME_COUNT; ++i) {
+            detector.receiveFrame(frameSource.frame(i));
+        }
+        detector.release();
+
+        assertEquals(FACE_COUNT, trackers.size());
+        assertNotSame(trackers.valueAt(0).getClassificationFilter(),
+                trackers.valueAt(1).getClassificationFilter());
+
+        for (int i = 0; i < trackers.size(); ++i) {
+            RecordingTracker tracker = trackers.valueAt(i);
+            assertEquals(FRAME_COUNT, tracker.mUpdates);
+            assertTrue("raw " + tracker.mRawJitter + ", filtered " + tracker.mFilteredJitter,
+                    tracker.mFilteredJitter < tracker.mRawJitter / 2);
+        }
+    }
+
+
+    /**
+     * Sums the frame-to-frame changes of the raw and filtered smiling probabilities.
+     */
+    private static final class RecordingTracker extends SmoothingFaceTracker {
+        int mUpdates;
+        float mRawJitter;
+        float mFilteredJitter;
+
+        private float mLastRaw = Float.NaN;
+        private float mLastFiltered = Float.NaN;
+
+        @Override
+        protected void onUpdate(Detections<Face> detectionResults, Face face,
+                FaceClassificationFilter filter) {
+            final float raw = face.getIsSmilingProbability();
+            final float filtered = filter.getSmilingProbability();
+            if (mUpdates > 0) {
+                mRawJitter += Math.abs(raw - mLastRaw);
+                mFilteredJitter += Math.abs(filtered - mLastFiltered);
+            }
+
+            mLastRaw = raw;
+            mLastFiltered = filtered;
+            mUpdates++;
+        }
+    }
+}
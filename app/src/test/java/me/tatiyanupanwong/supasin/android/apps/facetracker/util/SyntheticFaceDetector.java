@@ -0,0 +1,50 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import android.graphics.PointF;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
+
+/**
+ * Pure-Java stand-in for the GMS face detector.  Reports a fixed number of faces per frame, each
+ * with a stable id, drifting across the frame with all twelve landmarks and noisy classification
+ * probabilities derived from the frame id, so that runs are deterministic.
+ */
+public final class SyntheticFaceDetector extends Detector<Face> {
+    private static final int LANDMARK_COUNT = 12;
+
+    private final int mFaceCount;
+
+    public SyntheticFaceDetector(int faceCount) {
+        mFaceCount = faceCount;
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        final Frame.Metadata metadata = frame.getMetadata();
+        final int frameId = metadata.getId();
+        final float size = Math.min(metadata.getWidth(), metadata.getHeight()) / 4.0f;
+
+        SparseArray<Face> faces = new SparseArray<>(mFaceCount);
+        for (int i = 0; i < mFaceCount; ++i) {
+            final float x = (frameId * 2 + i * metadata.getWidth() / mFaceCount)
+                    % (metadata.getWidth() - size);
+            final float y = (i * size) % (metadata.getHeight() - size);
+
+            Landmark[] landmarks = new Landmark[LANDMARK_COUNT];
+            for (int type = 0; type < LANDMARK_COUNT; ++type) {
+                landmarks[type] = new Landmark(new PointF(
+                        x + size * (type % 4) / 4.0f, y + size * (type / 4) / 3.0f), type);
+            }
+
+            final float noise = ((frameId * 31 + i * 17) % 11 - 5) / 50.0f;
+            faces.append(i, new Face(i, new PointF(x, y), size, size,
+                    (frameId % 60) - 30.0f, (frameId % 30) - 15.0f, landmarks,
+                    0.8f + noise, 0.8f - noise, 0.5f + noise));
+        }
+        return faces;
+    }
+}
@@ -0,0 +1,41 @@
+package me.tatiyanupanwong.supasin.android.apps.facetracker.util;
+
+import android.graphics.ImageFormat;
+
+import com.google.android.gms.vision.Frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Produces blank NV21 frames at 30 frames/s without decoding anything.  All frames share the
+ * same image buffer, since {@link SyntheticFaceDetector} only looks at their metadata.
+ */
+public final class SyntheticFrameSource {
+    public static final long FRAME_INTERVAL_MILLIS = 33;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final ByteBuffer mImageData;
+
+    public SyntheticFrameSource(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mImageData = ByteBuffer.allocate(width * height * 3 / 2);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public Frame frame(int index) {
+        return new Frame.Builder()
+                .setImageData(mImageData, mWidth, mHeight, ImageFormat.NV21)
+                .setId(index)
+                .setTimestampMillis(index * FRAME_INTERVAL_MILLIS)
+                .build();
+    }
+}